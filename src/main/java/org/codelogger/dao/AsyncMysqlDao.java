@@ -0,0 +1,37 @@
+package org.codelogger.dao;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.codelogger.core.bean.Page;
+import org.codelogger.core.bean.Pageable;
+import org.codelogger.dao.bean.KeysetPage;
+import org.codelogger.dao.bean.KeysetPageable;
+
+/**
+ * {@link MysqlDao} with asynchronous variants of its operations. Each
+ * <code>xxxAsync</code> method runs <code>xxx</code> on the async executor of
+ * the dao and completes the returned future with its result.
+ */
+public interface AsyncMysqlDao<E, I extends Serializable> extends MysqlDao<E, I> {
+
+  CompletableFuture<E> findOneAsync(I id);
+
+  CompletableFuture<List<E>> findAllAsync();
+
+  CompletableFuture<Page<E>> findAllAsync(Pageable pageable);
+
+  CompletableFuture<KeysetPage<E>> findAllAsync(KeysetPageable pageable);
+
+  CompletableFuture<E> saveAsync(E e);
+
+  CompletableFuture<List<E>> saveAllAsync(Collection<E> entities);
+
+  CompletableFuture<List<E>> saveAllAsync(Iterable<E> entities, int batchSize);
+
+  CompletableFuture<Void> deleteAsync(I id);
+
+  CompletableFuture<Long> countAsync();
+}
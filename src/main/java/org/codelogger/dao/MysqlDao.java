@@ -1,10 +1,13 @@
 package org.codelogger.dao;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 import org.codelogger.core.bean.Page;
 import org.codelogger.core.bean.Pageable;
+import org.codelogger.dao.bean.KeysetPage;
+import org.codelogger.dao.bean.KeysetPageable;
 
 public interface MysqlDao<E, I extends Serializable> {
 
@@ -14,8 +17,26 @@ public interface MysqlDao<E, I extends Serializable> {
 
   Page<E> findAll(Pageable pageable);
 
+  /**
+   * Returns the page after {@link KeysetPageable#lastValues}, seeking by the
+   * sort key instead of skipping the previous rows.
+   */
+  KeysetPage<E> findAll(KeysetPageable pageable);
+
   E save(E e);
 
+  /**
+   * Saves the given entities in batches on one connection and one transaction,
+   * the ids generated for new entities are set back on them.
+   */
+  List<E> saveAll(Collection<E> entities);
+
+  /**
+   * Saves the given entities like {@link #saveAll(Collection)}, sending at most
+   * <code>batchSize</code> rows to the database per statement.
+   */
+  List<E> saveAll(Iterable<E> entities, int batchSize);
+
   void delete(I id);
 
   Long count();
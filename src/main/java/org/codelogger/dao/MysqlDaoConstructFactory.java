@@ -29,6 +29,16 @@ public class MysqlDaoConstructFactory extends DefaultConstructFactory {
       public Object invoke(final Object proxy, final Method method, final Object[] args)
         throws Throwable {
 
+        if (method.getDeclaringClass() == Object.class) {
+          if (method.getName().equals("equals")) {
+            return proxy == args[0];
+          }
+          if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+          }
+          return componentClass.getName() + "@" + Integer.toHexString(
+            System.identityHashCode(proxy));
+        }
         return mysqlDaoInterpreter.executeByMethod(method, args);
       }
 
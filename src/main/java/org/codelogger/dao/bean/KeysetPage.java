@@ -0,0 +1,61 @@
+package org.codelogger.dao.bean;
+
+import java.util.List;
+
+/**
+ * A page requested by a {@link KeysetPageable}.
+ */
+public class KeysetPage<E> {
+
+  public KeysetPage(final List<E> content, final Integer pageSize, final KeysetPageable next) {
+
+    this.content = content;
+    this.pageSize = pageSize;
+    this.next = next;
+  }
+
+  public List<E> getContent() {
+
+    return content;
+  }
+
+  public Integer getPageSize() {
+
+    return pageSize;
+  }
+
+  public boolean hasNext() {
+
+    return next != null;
+  }
+
+  /**
+   * Returns the request of the next page, null if this is the last page.
+   */
+  public KeysetPageable getNext() {
+
+    return next;
+  }
+
+  /**
+   * Returns the token of the next page, null if this is the last page.
+   */
+  public String getContinuationToken() {
+
+    return next == null ? null : next.toContinuationToken();
+  }
+
+  @Override
+  public String toString() {
+
+    return "KeysetPage [content=" + content + ", pageSize=" + pageSize + ", hasNext="
+      + hasNext() + "]";
+  }
+
+  private final List<E> content;
+
+  private final Integer pageSize;
+
+  private final KeysetPageable next;
+
+}
@@ -0,0 +1,167 @@
+package org.codelogger.dao.bean;
+
+import static java.lang.String.format;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Requests a page by the sort key values of the last row of the previous page
+ * instead of an offset, so every page costs the same however deep it is. The
+ * id of the entity is appended to the sort fields when it is not one of them,
+ * which keeps the order total.
+ */
+public class KeysetPageable {
+
+  public Integer pageSize;
+
+  /**
+   * The entity fields to sort by.
+   */
+  public String[] fields;
+
+  public boolean descending;
+
+  /**
+   * The sort key values of the last row of the previous page, null for the
+   * first page.
+   */
+  public Object[] lastValues;
+
+  public KeysetPageable() {
+
+  }
+
+  public KeysetPageable(final Integer pageSize, final boolean descending, final String... fields) {
+
+    this.pageSize = pageSize;
+    this.descending = descending;
+    this.fields = fields;
+  }
+
+  /**
+   * Returns the request of the page following the row with the given sort key
+   * values.
+   */
+  public KeysetPageable next(final Object[] lastValues) {
+
+    KeysetPageable next = new KeysetPageable(pageSize, descending, fields);
+    next.lastValues = lastValues;
+    return next;
+  }
+
+  /**
+   * Encodes this request into an opaque url safe token, see
+   * {@link #fromContinuationToken(String)}.
+   */
+  public String toContinuationToken() {
+
+    StringBuilder tokenBuilder = new StringBuilder();
+    tokenBuilder.append(pageSize).append(SEPARATOR).append(descending ? 'D' : 'A');
+    tokenBuilder.append(SEPARATOR).append(join(fields));
+    if (lastValues != null) {
+      for (Object value : lastValues) {
+        tokenBuilder.append(SEPARATOR).append(encodeValue(value));
+      }
+    }
+    return encode(tokenBuilder.toString());
+  }
+
+  /**
+   * Decodes a token created by {@link #toContinuationToken()}.
+   */
+  public static KeysetPageable fromContinuationToken(final String continuationToken) {
+
+    try {
+      String[] parts = decode(continuationToken).split("\\" + SEPARATOR, -1);
+      KeysetPageable pageable = new KeysetPageable(Integer.valueOf(parts[0]),
+        "D".equals(parts[1]), parts[2].isEmpty() ? new String[0] : parts[2].split(","));
+      if (parts.length > 3) {
+        pageable.lastValues = new Object[parts.length - 3];
+        for (int i = 3; i < parts.length; i++) {
+          pageable.lastValues[i - 3] = decodeValue(parts[i]);
+        }
+      }
+      return pageable;
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException(format("Invalid continuation token %s.",
+        continuationToken), e);
+    }
+  }
+
+  @Override
+  public String toString() {
+
+    return "KeysetPageable [pageSize=" + pageSize + ", fields=" + Arrays.toString(fields)
+      + ", descending=" + descending + ", lastValues=" + Arrays.toString(lastValues) + "]";
+  }
+
+  private static String encodeValue(final Object value) {
+
+    if (value == null) {
+      return "N";
+    } else if (value instanceof Long) {
+      return "L" + value;
+    } else if (value instanceof Integer) {
+      return "I" + value;
+    } else if (value instanceof Short) {
+      return "S" + value;
+    } else if (value instanceof Byte) {
+      return "B" + value;
+    } else if (value instanceof Boolean) {
+      return "Z" + value;
+    } else if (value instanceof String) {
+      return "T" + encode((String) value);
+    }
+    throw new IllegalArgumentException(format("Unsupported sort key value %s of %s.", value,
+      value.getClass()));
+  }
+
+  private static Object decodeValue(final String value) {
+
+    String text = value.substring(1);
+    switch (value.charAt(0)) {
+    case 'N':
+      return null;
+    case 'L':
+      return Long.valueOf(text);
+    case 'I':
+      return Integer.valueOf(text);
+    case 'S':
+      return Short.valueOf(text);
+    case 'B':
+      return Byte.valueOf(text);
+    case 'Z':
+      return Boolean.valueOf(text);
+    case 'T':
+      return decode(text);
+    default:
+      throw new IllegalArgumentException(value);
+    }
+  }
+
+  private static String join(final String[] values) {
+
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; values != null && i < values.length; i++) {
+      builder.append(i == 0 ? "" : ",").append(values[i]);
+    }
+    return builder.toString();
+  }
+
+  private static String encode(final String text) {
+
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(UTF_8));
+  }
+
+  private static String decode(final String text) {
+
+    return new String(Base64.getUrlDecoder().decode(text), UTF_8);
+  }
+
+  private static final char SEPARATOR = '|';
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+}
@@ -0,0 +1,33 @@
+package org.codelogger.dao.exception;
+
+public class MysqlConnectionTimeoutException extends MysqlConnectionException {
+
+  private static final long serialVersionUID = -3202791517046327741L;
+
+  public MysqlConnectionTimeoutException() {
+
+    super();
+  }
+
+  public MysqlConnectionTimeoutException(final String message, final Throwable cause,
+    final boolean enableSuppression, final boolean writableStackTrace) {
+
+    super(message, cause, enableSuppression, writableStackTrace);
+  }
+
+  public MysqlConnectionTimeoutException(final String message, final Throwable cause) {
+
+    super(message, cause);
+  }
+
+  public MysqlConnectionTimeoutException(final String message) {
+
+    super(message);
+  }
+
+  public MysqlConnectionTimeoutException(final Throwable cause) {
+
+    super(cause);
+  }
+
+}
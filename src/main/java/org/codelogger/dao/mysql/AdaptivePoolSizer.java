@@ -0,0 +1,121 @@
+package org.codelogger.dao.mysql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Measures borrow wait time, hold time and connections in use of a pool, and
+ * decides its size for the next interval. The pool grows to what Little's law
+ * asks for, at least by one, while borrowers wait, and shrinks by a quarter
+ * while less than half of it is in use.
+ */
+class AdaptivePoolSizer {
+
+  AdaptivePoolSizer(final int minSize, final int maxSize) {
+
+    this.minSize = Math.max(1, minSize);
+    this.maxSize = Math.max(this.minSize, maxSize);
+  }
+
+  void recordBorrow(final long waitNanos, final int inUse) {
+
+    borrowCount.increment();
+    if (waitNanos > 0) {
+      totalWaitNanos.add(waitNanos);
+    }
+    peakInUse.accumulate(inUse);
+  }
+
+  void recordReturn(final long holdNanos) {
+
+    returnCount.increment();
+    totalHoldNanos.add(holdNanos);
+  }
+
+  /**
+   * Returns the size of the pool for the next interval from the measures of
+   * the interval that just ended, and starts a new interval.
+   */
+  int nextSize(final int currentSize, final int waiters, final long intervalNanos) {
+
+    long borrows = borrowCount.sumThenReset();
+    long returns = returnCount.sumThenReset();
+    double intervalSeconds = Math.max(1, intervalNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    borrowRate = borrows / intervalSeconds;
+    averageWaitMillis = borrows == 0 ? 0 : totalWaitNanos.sumThenReset() / borrows
+      / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    averageHoldMillis = returns == 0 ? 0 : totalHoldNanos.sumThenReset() / returns
+      / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    peakInUseOfInterval = (int) peakInUse.getThenReset();
+    int littleSize = (int) Math.ceil(borrowRate * averageHoldMillis / 1000 * HEADROOM);
+    int nextSize = currentSize;
+    if (waiters > 0 || averageWaitMillis > WAIT_THRESHOLD_MILLIS) {
+      nextSize = Math.max(currentSize + 1, littleSize);
+    } else if (peakInUseOfInterval < currentSize / 2) {
+      nextSize = Math.max(currentSize * 3 / 4, Math.max(littleSize, peakInUseOfInterval + 1));
+    }
+    return Math.min(maxSize, Math.max(minSize, nextSize));
+  }
+
+  /**
+   * Returns the borrows per second of the last interval.
+   */
+  double getBorrowRate() {
+
+    return borrowRate;
+  }
+
+  double getAverageWaitMillis() {
+
+    return averageWaitMillis;
+  }
+
+  double getAverageHoldMillis() {
+
+    return averageHoldMillis;
+  }
+
+  int getPeakInUse() {
+
+    return peakInUseOfInterval;
+  }
+
+  private final LongAdder borrowCount = new LongAdder();
+
+  private final LongAdder returnCount = new LongAdder();
+
+  private final LongAdder totalWaitNanos = new LongAdder();
+
+  private final LongAdder totalHoldNanos = new LongAdder();
+
+  private final LongAccumulator peakInUse = new LongAccumulator(new LongBinaryOperator() {
+
+    @Override
+    public long applyAsLong(final long left, final long right) {
+
+      return Math.max(left, right);
+    }
+  }, 0);
+
+  private final int minSize;
+
+  private final int maxSize;
+
+  private volatile double borrowRate;
+
+  private volatile double averageWaitMillis;
+
+  private volatile double averageHoldMillis;
+
+  private volatile int peakInUseOfInterval;
+
+  /**
+   * Extra connections over what Little's law asks for, to absorb bursts.
+   */
+  private static final double HEADROOM = 1.25;
+
+  private static final double WAIT_THRESHOLD_MILLIS = 5;
+
+}
@@ -0,0 +1,98 @@
+package org.codelogger.dao.mysql;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs asynchronous dao calls with at most as many calls at a time as the
+ * connections they can borrow, so they never queue up on the pool. The calls
+ * run on daemon platform threads, or on virtual threads when they are asked
+ * for and the jvm supports them.
+ */
+class AsyncExecutor implements Executor {
+
+  AsyncExecutor(final int maxConcurrency, final boolean virtualThreads) {
+
+    ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+    if (virtualThreadExecutor != null) {
+      executor = virtualThreadExecutor;
+      permits = new Semaphore(maxConcurrency);
+    } else {
+      ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxConcurrency,
+        maxConcurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+
+          @Override
+          public Thread newThread(final Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "dao-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      threadPoolExecutor.allowCoreThreadTimeOut(true);
+      executor = threadPoolExecutor;
+      permits = null;
+    }
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+
+    if (permits == null) {
+      executor.execute(command);
+      return;
+    }
+    executor.execute(new Runnable() {
+
+      @Override
+      public void run() {
+
+        permits.acquireUninterruptibly();
+        try {
+          command.run();
+        } finally {
+          permits.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Stops taking calls, the calls already taken still run.
+   */
+  void shutdown() {
+
+    executor.shutdown();
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+        .invoke(null);
+    } catch (Exception e) {
+      logger.warn("Virtual threads are not supported by this jvm, use platform threads.");
+      return null;
+    }
+  }
+
+  private final ExecutorService executor;
+
+  private final Semaphore permits;
+
+  private final AtomicInteger threadNumber = new AtomicInteger();
+
+  private static final Logger logger = LoggerFactory.getLogger(AsyncExecutor.class);
+
+}
@@ -0,0 +1,63 @@
+package org.codelogger.dao.mysql;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters of a cache.
+ */
+public class CacheStatistics {
+
+  public long getHitCount() {
+
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+
+    return evictionCount.get();
+  }
+
+  /**
+   * Returns the ratio of hits to requests, 1.0 if there is no request yet.
+   */
+  public double getHitRate() {
+
+    long hits = hitCount.get();
+    long requests = hits + missCount.get();
+    return requests == 0 ? 1.0 : (double) hits / requests;
+  }
+
+  void recordHit() {
+
+    hitCount.incrementAndGet();
+  }
+
+  void recordMiss() {
+
+    missCount.incrementAndGet();
+  }
+
+  void recordEviction() {
+
+    evictionCount.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+
+    return "CacheStatistics [hitCount=" + hitCount + ", missCount=" + missCount
+      + ", evictionCount=" + evictionCount + "]";
+  }
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+}
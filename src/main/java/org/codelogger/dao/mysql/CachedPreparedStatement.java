@@ -0,0 +1,810 @@
+package org.codelogger.dao.mysql;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * A prepared statement owned by a {@link StatementCache}. Closing it returns it
+ * to the cache instead of closing the underlying statement.
+ */
+class CachedPreparedStatement implements PreparedStatement {
+
+  CachedPreparedStatement(final String key, final String sql, final PreparedStatement statement,
+    final StatementCache statementCache, final PooledConnection connection) {
+
+    this.key = key;
+    this.sql = sql;
+    this.statement = statement;
+    this.statementCache = statementCache;
+    this.connection = connection;
+  }
+
+  /**
+   * Returns this statement to its cache.
+   */
+  @Override
+  public void close() throws SQLException {
+
+    if (!closed) {
+      closed = true;
+      statementCache.release(this);
+    }
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+
+    return closed || statement.isClosed();
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+
+    return connection;
+  }
+
+  String getKey() {
+
+    return key;
+  }
+
+  String getSql() {
+
+    return sql;
+  }
+
+  PreparedStatement getPhysicalStatement() {
+
+    return statement;
+  }
+
+  void reuse() {
+
+    closed = false;
+  }
+
+  /**
+   * Returns false if the borrower changed a setting of this statement that
+   * {@link #resetState()} does not restore, so it must not be reused.
+   */
+  boolean isReusable() {
+
+    return !reconfigured;
+  }
+
+  /**
+   * Clears the parameters and the batch left by the borrower, and restores the
+   * fetch size and max rows, so the next borrower does not replay a failed
+   * batch or stream its results.
+   */
+  void resetState() throws SQLException {
+
+    statement.clearParameters();
+    if (batched) {
+      statement.clearBatch();
+      batched = false;
+    }
+    if (limited) {
+      statement.setFetchSize(0);
+      statement.setMaxRows(0);
+      limited = false;
+    }
+  }
+
+  @Override
+  public ResultSet executeQuery() throws SQLException {
+
+    return statement.executeQuery();
+  }
+
+  @Override
+  public int executeUpdate() throws SQLException {
+
+    return statement.executeUpdate();
+  }
+
+  @Override
+  public void setNull(final int parameterIndex, final int sqlType) throws SQLException {
+
+    statement.setNull(parameterIndex, sqlType);
+  }
+
+  @Override
+  public void setBoolean(final int parameterIndex, final boolean x) throws SQLException {
+
+    statement.setBoolean(parameterIndex, x);
+  }
+
+  @Override
+  public void setByte(final int parameterIndex, final byte x) throws SQLException {
+
+    statement.setByte(parameterIndex, x);
+  }
+
+  @Override
+  public void setShort(final int parameterIndex, final short x) throws SQLException {
+
+    statement.setShort(parameterIndex, x);
+  }
+
+  @Override
+  public void setInt(final int parameterIndex, final int x) throws SQLException {
+
+    statement.setInt(parameterIndex, x);
+  }
+
+  @Override
+  public void setLong(final int parameterIndex, final long x) throws SQLException {
+
+    statement.setLong(parameterIndex, x);
+  }
+
+  @Override
+  public void setFloat(final int parameterIndex, final float x) throws SQLException {
+
+    statement.setFloat(parameterIndex, x);
+  }
+
+  @Override
+  public void setDouble(final int parameterIndex, final double x) throws SQLException {
+
+    statement.setDouble(parameterIndex, x);
+  }
+
+  @Override
+  public void setBigDecimal(final int parameterIndex, final BigDecimal x) throws SQLException {
+
+    statement.setBigDecimal(parameterIndex, x);
+  }
+
+  @Override
+  public void setString(final int parameterIndex, final String x) throws SQLException {
+
+    statement.setString(parameterIndex, x);
+  }
+
+  @Override
+  public void setBytes(final int parameterIndex, final byte[] x) throws SQLException {
+
+    statement.setBytes(parameterIndex, x);
+  }
+
+  @Override
+  public void setDate(final int parameterIndex, final Date x) throws SQLException {
+
+    statement.setDate(parameterIndex, x);
+  }
+
+  @Override
+  public void setTime(final int parameterIndex, final Time x) throws SQLException {
+
+    statement.setTime(parameterIndex, x);
+  }
+
+  @Override
+  public void setTimestamp(final int parameterIndex, final Timestamp x) throws SQLException {
+
+    statement.setTimestamp(parameterIndex, x);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x,
+    final int length) throws SQLException {
+
+    statement.setAsciiStream(parameterIndex, x, length);
+  }
+
+  @Override
+  @Deprecated
+  public void setUnicodeStream(final int parameterIndex, final InputStream x,
+    final int length) throws SQLException {
+
+    statement.setUnicodeStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x,
+    final int length) throws SQLException {
+
+    statement.setBinaryStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void clearParameters() throws SQLException {
+
+    statement.clearParameters();
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x, final int targetSqlType)
+    throws SQLException {
+
+    statement.setObject(parameterIndex, x, targetSqlType);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x) throws SQLException {
+
+    statement.setObject(parameterIndex, x);
+  }
+
+  @Override
+  public boolean execute() throws SQLException {
+
+    return statement.execute();
+  }
+
+  @Override
+  public void addBatch() throws SQLException {
+
+    batched = true;
+    statement.addBatch();
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader,
+    final int length) throws SQLException {
+
+    statement.setCharacterStream(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setRef(final int parameterIndex, final Ref x) throws SQLException {
+
+    statement.setRef(parameterIndex, x);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final Blob x) throws SQLException {
+
+    statement.setBlob(parameterIndex, x);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Clob x) throws SQLException {
+
+    statement.setClob(parameterIndex, x);
+  }
+
+  @Override
+  public void setArray(final int parameterIndex, final Array x) throws SQLException {
+
+    statement.setArray(parameterIndex, x);
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+
+    return statement.getMetaData();
+  }
+
+  @Override
+  public void setDate(final int parameterIndex, final Date x, final Calendar cal)
+    throws SQLException {
+
+    statement.setDate(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setTime(final int parameterIndex, final Time x, final Calendar cal)
+    throws SQLException {
+
+    statement.setTime(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setTimestamp(final int parameterIndex, final Timestamp x, final Calendar cal)
+    throws SQLException {
+
+    statement.setTimestamp(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setNull(final int parameterIndex, final int sqlType, final String typeName)
+    throws SQLException {
+
+    statement.setNull(parameterIndex, sqlType, typeName);
+  }
+
+  @Override
+  public void setURL(final int parameterIndex, final URL x) throws SQLException {
+
+    statement.setURL(parameterIndex, x);
+  }
+
+  @Override
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+
+    return statement.getParameterMetaData();
+  }
+
+  @Override
+  public void setRowId(final int parameterIndex, final RowId x) throws SQLException {
+
+    statement.setRowId(parameterIndex, x);
+  }
+
+  @Override
+  public void setNString(final int parameterIndex, final String value) throws SQLException {
+
+    statement.setNString(parameterIndex, value);
+  }
+
+  @Override
+  public void setNCharacterStream(final int parameterIndex, final Reader value,
+    final long length) throws SQLException {
+
+    statement.setNCharacterStream(parameterIndex, value, length);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final NClob value) throws SQLException {
+
+    statement.setNClob(parameterIndex, value);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Reader reader, final long length)
+    throws SQLException {
+
+    statement.setClob(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final InputStream inputStream,
+    final long length) throws SQLException {
+
+    statement.setBlob(parameterIndex, inputStream, length);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final Reader reader, final long length)
+    throws SQLException {
+
+    statement.setNClob(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setSQLXML(final int parameterIndex, final SQLXML xmlObject) throws SQLException {
+
+    statement.setSQLXML(parameterIndex, xmlObject);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x, final int targetSqlType,
+    final int scaleOrLength) throws SQLException {
+
+    statement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x,
+    final long length) throws SQLException {
+
+    statement.setAsciiStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x,
+    final long length) throws SQLException {
+
+    statement.setBinaryStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader,
+    final long length) throws SQLException {
+
+    statement.setCharacterStream(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x) throws SQLException {
+
+    statement.setAsciiStream(parameterIndex, x);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x) throws SQLException {
+
+    statement.setBinaryStream(parameterIndex, x);
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader)
+    throws SQLException {
+
+    statement.setCharacterStream(parameterIndex, reader);
+  }
+
+  @Override
+  public void setNCharacterStream(final int parameterIndex, final Reader value)
+    throws SQLException {
+
+    statement.setNCharacterStream(parameterIndex, value);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Reader reader) throws SQLException {
+
+    statement.setClob(parameterIndex, reader);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final InputStream inputStream) throws SQLException {
+
+    statement.setBlob(parameterIndex, inputStream);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final Reader reader) throws SQLException {
+
+    statement.setNClob(parameterIndex, reader);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x, final SQLType targetSqlType,
+    final int scaleOrLength) throws SQLException {
+
+    statement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x,
+    final SQLType targetSqlType) throws SQLException {
+
+    statement.setObject(parameterIndex, x, targetSqlType);
+  }
+
+  @Override
+  public long executeLargeUpdate() throws SQLException {
+
+    return statement.executeLargeUpdate();
+  }
+
+  @Override
+  public ResultSet executeQuery(final String sql) throws SQLException {
+
+    return statement.executeQuery(sql);
+  }
+
+  @Override
+  public int executeUpdate(final String sql) throws SQLException {
+
+    return statement.executeUpdate(sql);
+  }
+
+  @Override
+  public int getMaxFieldSize() throws SQLException {
+
+    return statement.getMaxFieldSize();
+  }
+
+  @Override
+  public void setMaxFieldSize(final int max) throws SQLException {
+
+    reconfigured = true;
+    statement.setMaxFieldSize(max);
+  }
+
+  @Override
+  public int getMaxRows() throws SQLException {
+
+    return statement.getMaxRows();
+  }
+
+  @Override
+  public void setMaxRows(final int max) throws SQLException {
+
+    limited = true;
+    statement.setMaxRows(max);
+  }
+
+  @Override
+  public void setEscapeProcessing(final boolean enable) throws SQLException {
+
+    reconfigured = true;
+    statement.setEscapeProcessing(enable);
+  }
+
+  @Override
+  public int getQueryTimeout() throws SQLException {
+
+    return statement.getQueryTimeout();
+  }
+
+  @Override
+  public void setQueryTimeout(final int seconds) throws SQLException {
+
+    reconfigured = true;
+    statement.setQueryTimeout(seconds);
+  }
+
+  @Override
+  public void cancel() throws SQLException {
+
+    statement.cancel();
+  }
+
+  @Override
+  public SQLWarning getWarnings() throws SQLException {
+
+    return statement.getWarnings();
+  }
+
+  @Override
+  public void clearWarnings() throws SQLException {
+
+    statement.clearWarnings();
+  }
+
+  @Override
+  public void setCursorName(final String name) throws SQLException {
+
+    reconfigured = true;
+    statement.setCursorName(name);
+  }
+
+  @Override
+  public boolean execute(final String sql) throws SQLException {
+
+    return statement.execute(sql);
+  }
+
+  @Override
+  public ResultSet getResultSet() throws SQLException {
+
+    return statement.getResultSet();
+  }
+
+  @Override
+  public int getUpdateCount() throws SQLException {
+
+    return statement.getUpdateCount();
+  }
+
+  @Override
+  public boolean getMoreResults() throws SQLException {
+
+    return statement.getMoreResults();
+  }
+
+  @Override
+  public void setFetchDirection(final int direction) throws SQLException {
+
+    reconfigured = true;
+    statement.setFetchDirection(direction);
+  }
+
+  @Override
+  public int getFetchDirection() throws SQLException {
+
+    return statement.getFetchDirection();
+  }
+
+  @Override
+  public void setFetchSize(final int rows) throws SQLException {
+
+    limited = true;
+    statement.setFetchSize(rows);
+  }
+
+  @Override
+  public int getFetchSize() throws SQLException {
+
+    return statement.getFetchSize();
+  }
+
+  @Override
+  public int getResultSetConcurrency() throws SQLException {
+
+    return statement.getResultSetConcurrency();
+  }
+
+  @Override
+  public int getResultSetType() throws SQLException {
+
+    return statement.getResultSetType();
+  }
+
+  @Override
+  public void addBatch(final String sql) throws SQLException {
+
+    batched = true;
+    statement.addBatch(sql);
+  }
+
+  @Override
+  public void clearBatch() throws SQLException {
+
+    statement.clearBatch();
+  }
+
+  @Override
+  public int[] executeBatch() throws SQLException {
+
+    return statement.executeBatch();
+  }
+
+  @Override
+  public boolean getMoreResults(final int current) throws SQLException {
+
+    return statement.getMoreResults(current);
+  }
+
+  @Override
+  public ResultSet getGeneratedKeys() throws SQLException {
+
+    return statement.getGeneratedKeys();
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+
+    return statement.executeUpdate(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+
+    return statement.executeUpdate(sql, columnIndexes);
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
+
+    return statement.executeUpdate(sql, columnNames);
+  }
+
+  @Override
+  public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
+
+    return statement.execute(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
+
+    return statement.execute(sql, columnIndexes);
+  }
+
+  @Override
+  public boolean execute(final String sql, final String[] columnNames) throws SQLException {
+
+    return statement.execute(sql, columnNames);
+  }
+
+  @Override
+  public int getResultSetHoldability() throws SQLException {
+
+    return statement.getResultSetHoldability();
+  }
+
+  @Override
+  public void setPoolable(final boolean poolable) throws SQLException {
+
+    reconfigured = true;
+    statement.setPoolable(poolable);
+  }
+
+  @Override
+  public boolean isPoolable() throws SQLException {
+
+    return statement.isPoolable();
+  }
+
+  @Override
+  public void closeOnCompletion() throws SQLException {
+
+    reconfigured = true;
+    statement.closeOnCompletion();
+  }
+
+  @Override
+  public boolean isCloseOnCompletion() throws SQLException {
+
+    return statement.isCloseOnCompletion();
+  }
+
+  @Override
+  public long getLargeUpdateCount() throws SQLException {
+
+    return statement.getLargeUpdateCount();
+  }
+
+  @Override
+  public void setLargeMaxRows(final long max) throws SQLException {
+
+    limited = true;
+    statement.setLargeMaxRows(max);
+  }
+
+  @Override
+  public long getLargeMaxRows() throws SQLException {
+
+    return statement.getLargeMaxRows();
+  }
+
+  @Override
+  public long[] executeLargeBatch() throws SQLException {
+
+    return statement.executeLargeBatch();
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql) throws SQLException {
+
+    return statement.executeLargeUpdate(sql);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int autoGeneratedKeys)
+    throws SQLException {
+
+    return statement.executeLargeUpdate(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+
+    return statement.executeLargeUpdate(sql, columnIndexes);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final String[] columnNames) throws SQLException {
+
+    return statement.executeLargeUpdate(sql, columnNames);
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+
+    return statement.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+
+    return statement.isWrapperFor(iface);
+  }
+
+  private final String key;
+
+  private final String sql;
+
+  private final PreparedStatement statement;
+
+  private final StatementCache statementCache;
+
+  private final PooledConnection connection;
+
+  private boolean closed;
+
+  private boolean batched;
+
+  private boolean limited;
+
+  private boolean reconfigured;
+
+}
@@ -0,0 +1,219 @@
+package org.codelogger.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Splits the time of the dao call running on the current thread into pool
+ * wait, execute and row mapping time, and counts the rows it maps. Dao calls
+ * made while another one runs on the same thread are counted in the outer
+ * call. One timer is reused per thread, so timing allocates nothing unless
+ * the flight recorder events are on.
+ */
+final class CallTimer {
+
+  private CallTimer() {
+
+  }
+
+  /**
+   * Starts timing a call on the current thread, returns null if a call is
+   * already timed.
+   */
+  static CallTimer start() {
+
+    CallTimer callTimer = callTimers.get();
+    if (callTimer.running) {
+      return null;
+    }
+    callTimer.running = true;
+    callTimer.poolWaitNanos = 0;
+    callTimer.executeNanos = 0;
+    callTimer.mappingNanos = 0;
+    callTimer.rows = 0;
+    callTimer.sql = null;
+    callTimer.parameters = null;
+    callTimer.slowestExecuteNanos = -1;
+    callTimer.event = FlightRecorderEvents.beginDaoCall();
+    callTimer.startTime = System.nanoTime();
+    return callTimer;
+  }
+
+  /**
+   * Records the call started by {@link #start()} to the given metrics.
+   */
+  void stop(final DaoMethodMetrics metrics, final boolean failed) {
+
+    running = false;
+    metrics.record(System.nanoTime() - startTime, poolWaitNanos, executeNanos, mappingNanos, rows,
+      failed);
+    DaoCallEvent event = this.event;
+    if (event != null) {
+      this.event = null;
+      event.end();
+      if (event.shouldCommit()) {
+        event.method = metrics.getName();
+        event.sql = sql == null ? null : SqlFingerprint.of(sql);
+        event.rows = rows;
+        event.failed = failed;
+        event.poolWait = poolWaitNanos;
+        event.executeTime = executeNanos;
+        event.mappingTime = mappingNanos;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Returns the execute and mapping time of the last call, which leaves out
+   * the pool wait.
+   */
+  long getStatementNanos() {
+
+    return executeNanos + mappingNanos;
+  }
+
+  long getRows() {
+
+    return rows;
+  }
+
+  /**
+   * Returns the statement that took longest to execute in the last call, not
+   * the last one it executed, null if it executed none.
+   */
+  String getSql() {
+
+    return sql;
+  }
+
+  /**
+   * Returns the parameters of {@link #getSql()}, null for batches.
+   */
+  Object[] getParameters() {
+
+    return parameters;
+  }
+
+  static void recordPoolWait(final long startTime) {
+
+    callTimers.get().poolWaitNanos += System.nanoTime() - startTime;
+  }
+
+  /**
+   * Returns the start time to pass to
+   * {@link #recordMapping(long, int, Class)} when the rows are mapped.
+   */
+  static long startMapping() {
+
+    ResultMappingEvent mappingEvent = FlightRecorderEvents.beginResultMapping();
+    if (mappingEvent != null) {
+      callTimers.get().mappingEvent = mappingEvent;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the time since the given start as row mapping of the given number
+   * of entities.
+   */
+  static void recordMapping(final long startTime, final int rows, final Class<?> entityClass) {
+
+    CallTimer callTimer = callTimers.get();
+    callTimer.mappingNanos += System.nanoTime() - startTime;
+    callTimer.rows += rows;
+    ResultMappingEvent mappingEvent = callTimer.mappingEvent;
+    if (mappingEvent != null) {
+      callTimer.mappingEvent = null;
+      mappingEvent.end();
+      if (mappingEvent.shouldCommit()) {
+        mappingEvent.entity = entityClass.getName();
+        mappingEvent.rows = rows;
+        mappingEvent.commit();
+      }
+    }
+  }
+
+  static ResultSet executeQuery(final PreparedStatement statement, final String sql,
+    final Object[] parameters) throws SQLException {
+
+    long startTime = System.nanoTime();
+    try {
+      return statement.executeQuery();
+    } finally {
+      recordExecute(startTime, sql, parameters);
+    }
+  }
+
+  static int executeUpdate(final PreparedStatement statement, final String sql,
+    final Object[] parameters) throws SQLException {
+
+    long startTime = System.nanoTime();
+    try {
+      return statement.executeUpdate();
+    } finally {
+      recordExecute(startTime, sql, parameters);
+    }
+  }
+
+  static int[] executeBatch(final PreparedStatement statement, final String sql)
+    throws SQLException {
+
+    long startTime = System.nanoTime();
+    try {
+      return statement.executeBatch();
+    } finally {
+      recordExecute(startTime, sql, null);
+    }
+  }
+
+  private static void recordExecute(final long startTime, final String sql,
+    final Object[] parameters) {
+
+    long executeNanos = System.nanoTime() - startTime;
+    CallTimer callTimer = callTimers.get();
+    callTimer.executeNanos += executeNanos;
+    if (executeNanos > callTimer.slowestExecuteNanos) {
+      callTimer.slowestExecuteNanos = executeNanos;
+      callTimer.sql = sql;
+      callTimer.parameters = parameters;
+    }
+  }
+
+  private boolean running;
+
+  private long startTime;
+
+  private long poolWaitNanos;
+
+  private long executeNanos;
+
+  private long mappingNanos;
+
+  private long rows;
+
+  /**
+   * The statement that took longest to execute in the call, and its
+   * parameters.
+   */
+  private String sql;
+
+  private Object[] parameters;
+
+  private long slowestExecuteNanos;
+
+  private DaoCallEvent event;
+
+  private ResultMappingEvent mappingEvent;
+
+  private static final ThreadLocal<CallTimer> callTimers = new ThreadLocal<CallTimer>() {
+
+    @Override
+    protected CallTimer initialValue() {
+
+      return new CallTimer();
+    }
+  };
+
+}
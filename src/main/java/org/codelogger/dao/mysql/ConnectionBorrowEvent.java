@@ -0,0 +1,33 @@
+package org.codelogger.dao.mysql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a connection borrowed from a {@link DataSourcePool}.
+ */
+@Name("org.codelogger.dao.ConnectionBorrow")
+@Label("Connection Borrow")
+@Category({ "Codelogger", "DAO" })
+@Description("A connection borrowed from a pool, with the time spent waiting for a free one.")
+@Enabled(false)
+@StackTrace(false)
+class ConnectionBorrowEvent extends jdk.jfr.Event {
+
+  @Label("Data Source")
+  String dataSource;
+
+  @Label("Wait Time")
+  @Timespan
+  long waitTime;
+
+  @Label("New Connection")
+  @Description("Whether a physical connection was opened for this borrow.")
+  boolean newConnection;
+
+}
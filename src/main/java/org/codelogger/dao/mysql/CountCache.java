@@ -0,0 +1,86 @@
+package org.codelogger.dao.mysql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches page totals per count query and parameters for a fixed time, the least
+ * recently used totals are dropped when the cache is full.
+ */
+class CountCache {
+
+  CountCache(final int maxSize) {
+
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cached total, null if there is none or it has expired.
+   */
+  synchronized Long get(final String countSql, final Object[] parameters) {
+
+    CachedCount cachedCount = counts.get(new QueryKey(countSql, parameters));
+    return cachedCount == null || cachedCount.expireTime < System.currentTimeMillis() ? null
+      : cachedCount.count;
+  }
+
+  /**
+   * Returns the generation to pass to
+   * {@link #put(String, Object[], long, long, long)} for a count about to be
+   * read from the database.
+   */
+  synchronized long getGeneration() {
+
+    return generation;
+  }
+
+  /**
+   * Caches the count unless the cache was cleared since the given generation.
+   */
+  synchronized void put(final String countSql, final Object[] parameters, final long count,
+    final long ttl, final long readGeneration) {
+
+    if (readGeneration != generation) {
+      return;
+    }
+    counts.put(new QueryKey(countSql, parameters), new CachedCount(count,
+      System.currentTimeMillis() + ttl));
+  }
+
+  synchronized void clear() {
+
+    generation++;
+    counts.clear();
+  }
+
+  private static class CachedCount {
+
+    CachedCount(final long count, final long expireTime) {
+
+      this.count = count;
+      this.expireTime = expireTime;
+    }
+
+    private final long count;
+
+    private final long expireTime;
+
+  }
+
+  private final Map<QueryKey, CachedCount> counts = new LinkedHashMap<QueryKey, CachedCount>(16,
+    0.75f, true) {
+
+    private static final long serialVersionUID = 5016931717433404617L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<QueryKey, CachedCount> eldest) {
+
+      return size() > maxSize;
+    }
+  };
+
+  private final int maxSize;
+
+  private long generation;
+
+}
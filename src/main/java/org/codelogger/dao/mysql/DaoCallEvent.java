@@ -0,0 +1,47 @@
+package org.codelogger.dao.mysql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of one dao method call.
+ */
+@Name("org.codelogger.dao.DaoCall")
+@Label("DAO Call")
+@Category({ "Codelogger", "DAO" })
+@Description("A call of a dao method, with the fingerprint of its slowest statement.")
+@Enabled(false)
+@StackTrace(false)
+class DaoCallEvent extends jdk.jfr.Event {
+
+  @Label("Method")
+  String method;
+
+  @Label("SQL Fingerprint")
+  @Description("The fingerprint of the statement that took longest to execute in the call.")
+  String sql;
+
+  @Label("Rows")
+  long rows;
+
+  @Label("Failed")
+  boolean failed;
+
+  @Label("Pool Wait")
+  @Timespan
+  long poolWait;
+
+  @Label("Execute Time")
+  @Timespan
+  long executeTime;
+
+  @Label("Mapping Time")
+  @Timespan
+  long mappingTime;
+
+}
@@ -0,0 +1,175 @@
+package org.codelogger.dao.mysql;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one dao method, recorded by {@link CallTimer}.
+ */
+class DaoMethodMetrics implements DaoMethodMetricsMXBean {
+
+  DaoMethodMetrics(final String name) {
+
+    this.name = name;
+  }
+
+  /**
+   * Returns the dao and method, like <code>UserDao.findAll(Pageable)</code>.
+   */
+  String getName() {
+
+    return name;
+  }
+
+  void record(final long totalNanos, final long poolWaitNanos, final long executeNanos,
+    final long mappingNanos, final long rows, final boolean failed) {
+
+    calls.increment();
+    if (failed) {
+      errors.increment();
+    }
+    if (rows > 0) {
+      this.rows.add(rows);
+    }
+    total.record(totalNanos);
+    poolWait.record(poolWaitNanos);
+    execute.record(executeNanos);
+    mapping.record(mappingNanos);
+  }
+
+  @Override
+  public long getCallCount() {
+
+    return calls.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+
+    return errors.sum();
+  }
+
+  @Override
+  public long getRowCount() {
+
+    return rows.sum();
+  }
+
+  @Override
+  public double getMeanMillis() {
+
+    return total.getMeanMillis();
+  }
+
+  @Override
+  public double getP50Millis() {
+
+    return total.getPercentileMillis(50);
+  }
+
+  @Override
+  public double getP95Millis() {
+
+    return total.getPercentileMillis(95);
+  }
+
+  @Override
+  public double getP99Millis() {
+
+    return total.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getMaxMillis() {
+
+    return total.getMaxMillis();
+  }
+
+  @Override
+  public double getPoolWaitP50Millis() {
+
+    return poolWait.getPercentileMillis(50);
+  }
+
+  @Override
+  public double getPoolWaitP95Millis() {
+
+    return poolWait.getPercentileMillis(95);
+  }
+
+  @Override
+  public double getPoolWaitP99Millis() {
+
+    return poolWait.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getPoolWaitMaxMillis() {
+
+    return poolWait.getMaxMillis();
+  }
+
+  @Override
+  public double getExecuteP50Millis() {
+
+    return execute.getPercentileMillis(50);
+  }
+
+  @Override
+  public double getExecuteP95Millis() {
+
+    return execute.getPercentileMillis(95);
+  }
+
+  @Override
+  public double getExecuteP99Millis() {
+
+    return execute.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getExecuteMaxMillis() {
+
+    return execute.getMaxMillis();
+  }
+
+  @Override
+  public double getMappingP50Millis() {
+
+    return mapping.getPercentileMillis(50);
+  }
+
+  @Override
+  public double getMappingP95Millis() {
+
+    return mapping.getPercentileMillis(95);
+  }
+
+  @Override
+  public double getMappingP99Millis() {
+
+    return mapping.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getMappingMaxMillis() {
+
+    return mapping.getMaxMillis();
+  }
+
+  private final String name;
+
+  private final LongAdder calls = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
+  private final LongAdder rows = new LongAdder();
+
+  private final LatencyHistogram total = new LatencyHistogram();
+
+  private final LatencyHistogram poolWait = new LatencyHistogram();
+
+  private final LatencyHistogram execute = new LatencyHistogram();
+
+  private final LatencyHistogram mapping = new LatencyHistogram();
+
+}
@@ -0,0 +1,54 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Calls, errors, rows and latency percentiles of one dao method, registered as
+ * <code>org.codelogger.dao:type=DaoMethod,dao={dao},method={method}</code>.
+ * Pool wait, execute and mapping times are parts of the total time of a call,
+ * all times are in milliseconds.
+ */
+public interface DaoMethodMetricsMXBean {
+
+  long getCallCount();
+
+  long getErrorCount();
+
+  /**
+   * Returns the number of rows mapped to entities by all calls.
+   */
+  long getRowCount();
+
+  double getMeanMillis();
+
+  double getP50Millis();
+
+  double getP95Millis();
+
+  double getP99Millis();
+
+  double getMaxMillis();
+
+  double getPoolWaitP50Millis();
+
+  double getPoolWaitP95Millis();
+
+  double getPoolWaitP99Millis();
+
+  double getPoolWaitMaxMillis();
+
+  double getExecuteP50Millis();
+
+  double getExecuteP95Millis();
+
+  double getExecuteP99Millis();
+
+  double getExecuteMaxMillis();
+
+  double getMappingP50Millis();
+
+  double getMappingP95Millis();
+
+  double getMappingP99Millis();
+
+  double getMappingMaxMillis();
+
+}
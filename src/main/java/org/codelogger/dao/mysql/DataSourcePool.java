@@ -1,28 +1,52 @@
 package org.codelogger.dao.mysql;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static java.lang.String.format;
+
 import java.sql.Connection;
+import java.sql.Driver;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
 
 import org.codelogger.dao.exception.MysqlConnectionException;
+import org.codelogger.dao.exception.MysqlConnectionTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.mysql.jdbc.Driver;
 import com.mysql.jdbc.NonRegisteringDriver;
 
-public class DataSourcePool {
+public class DataSourcePool implements DataSourcePoolMXBean {
 
   public DataSourcePool(final Properties settings) {
 
+    this(settings, null);
+  }
+
+  /**
+   * @param driver
+   *          opens the connections of this pool, null for the MySQL driver.
+   */
+  DataSourcePool(final Properties settings, final Driver driver) {
+
     if (settings == null) {
       throw new IllegalArgumentException("Datasource settings can not be null.");
     }
@@ -45,91 +69,821 @@ public class DataSourcePool {
     minConnectionSizeInPool = Integer.valueOf(settings
       .getProperty(MIN_CONNECTION_SIZE_IN_POOL, "1"));
     maxIdleTime = Integer.valueOf(settings.getProperty(CONNECTION_MAX_IDLE_TIME, "1800000"));
+    borrowTimeout = Long.valueOf(settings.getProperty(CONNECTION_BORROW_TIMEOUT, "30000"));
+    validationIdleTime = Long.valueOf(settings.getProperty(CONNECTION_VALIDATION_IDLE_TIME,
+      "30000"));
+    leakDetectionThreshold = Long.valueOf(settings.getProperty(
+      CONNECTION_LEAK_DETECTION_THRESHOLD, "0"));
+    if (Boolean.valueOf(settings.getProperty(ADAPTIVE_POOL, "false"))) {
+      poolSizer = new AdaptivePoolSizer(minConnectionSizeInPool, maxConnectionSizeInPool);
+      poolSize = Math.min(maxConnectionSizeInPool, Math.max(1, minConnectionSizeInPool));
+    } else {
+      poolSizer = null;
+      poolSize = maxConnectionSizeInPool;
+    }
+    borrowPermits = new ResizableSemaphore(poolSize);
+    String mysqlHost = settings.getProperty(HOST_PROPERTY_KEY);
+    jdbcUrl = mysqlHost.startsWith(JDBC_MYSQL_HOST_PREFIX) ? mysqlHost : JDBC_MYSQL_HOST_PREFIX
+      + mysqlHost;
+    try {
+      this.driver = driver != null ? driver : (Driver) Class.forName(JDBC_DRIVER).newInstance();
+    } catch (Exception e) {
+      throw new MysqlConnectionException(e);
+    }
+    statementCacheSize = Integer.valueOf(settings.getProperty(STATEMENT_CACHE_SIZE, "64"));
+    if (statementCacheSize > 0) {
+      this.settings.setProperty(USE_SERVER_PREPARED_STATEMENTS,
+        settings.getProperty(SERVER_PREPARED_STATEMENTS, "true"));
+    }
 
-    Timer timer = new Timer();
-    timer.schedule(new TimerTask() {
-
-      @Override
-      public void run() {
-
-        int totalConnection = connections.size();
-        logger.trace("Test total[{}] connections if enable.", totalConnection);
-        for (int i = 0; i < totalConnection; i++) {
-          Connection connection = connections.poll();
-          if (connection != null) {
-            try {
-              Statement statement = connection.createStatement();
-              statement.execute("SELECT 1");
-              statement.close();
-              connections.add(connection);
-            } catch (SQLException e) {
-              logger.info("Connect is disabled.", e);
-            }
+    if (poolSizer != null) {
+      final long resizeInterval = Long.valueOf(settings.getProperty(ADAPTIVE_POOL_INTERVAL,
+        "10000"));
+      getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+
+        @Override
+        public void run() {
+
+          try {
+            resize(TimeUnit.MILLISECONDS.toNanos(resizeInterval));
+          } catch (RuntimeException e) {
+            logger.warn("Resize pool of {} failed.", jdbcUrl, e);
           }
         }
-      }
-    }, 0, TimeUnit.SECONDS.toMillis(30));
+      }, resizeInterval, resizeInterval, TimeUnit.MILLISECONDS);
+    } else {
+      getMaintenanceExecutor();
+    }
+    if (leakDetectionThreshold > 0) {
+      long leakCheckInterval = Math.max(1, leakDetectionThreshold / 2);
+      getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+
+        @Override
+        public void run() {
+
+          try {
+            detectLeaks();
+          } catch (RuntimeException e) {
+            logger.warn("Detect leaked connections of {} failed.", jdbcUrl, e);
+          }
+        }
+      }, leakCheckInterval, leakCheckInterval, TimeUnit.MILLISECONDS);
+    }
+    warmUp();
 
     dataSourcePools.put(this, System.currentTimeMillis());
+    mbeanName = MBeans.register(this, MBeans.DOMAIN + ":type=DataSourcePool,name="
+      + ObjectName.quote(getDataSourceKey()));
+  }
+
+  /**
+   * Returns the pool shared by all daos with the same connection and pool
+   * settings, creating it on first use.
+   */
+  public static DataSourcePool getInstance(final Properties settings) {
+
+    if (settings == null) {
+      throw new IllegalArgumentException("Datasource settings can not be null.");
+    }
+    String poolKey = getPoolKey(settings);
+    DataSourcePool dataSourcePool = sharedPools.get(poolKey);
+    if (dataSourcePool == null) {
+      synchronized (sharedPools) {
+        dataSourcePool = sharedPools.get(poolKey);
+        if (dataSourcePool == null) {
+          dataSourcePool = new DataSourcePool(settings);
+          sharedPools.put(poolKey, dataSourcePool);
+        }
+      }
+    }
+    return dataSourcePool;
   }
 
   /**
-   * 获取数据库连接
+   * Opens a new connection, returns null if the pool already has its maximum
+   * number of connections. A connection opened for a borrower is marked
+   * borrowed before it is added to the pool, so no other borrower can take it.
+   */
+  private PooledConnection newConnection(final boolean borrowed) throws SQLException {
+
+    int openConnections;
+    do {
+      openConnections = this.openConnections.get();
+      if (openConnections >= poolSize) {
+        return null;
+      }
+    } while (!this.openConnections.compareAndSet(openConnections, openConnections + 1));
+    PooledConnection connection;
+    try {
+      connection = new PooledConnection(driver.connect(jdbcUrl, settings), this,
+        statementCacheSize > 0 ? new StatementCache(statementCacheSize, statementCacheStatistics)
+          : null);
+    } catch (SQLException e) {
+      this.openConnections.decrementAndGet();
+      throw e;
+    } catch (RuntimeException e) {
+      this.openConnections.decrementAndGet();
+      throw e;
+    }
+    if (borrowed) {
+      connection.markBorrowed();
+    }
+    synchronized (this) {
+      PooledConnection[] newConnections = Arrays.copyOf(connections, connections.length + 1);
+      newConnections[connections.length] = connection;
+      connections = newConnections;
+    }
+    return connection;
+  }
+
+  /**
+   * Checks a connection about to be borrowed if it has been idle longer than
+   * <code>database.connection.validation.idle.time</code>, recently used
+   * connections are trusted.
+   */
+  private boolean isValid(final PooledConnection connection) {
+
+    if (System.currentTimeMillis() - connection.getLastUsedTime() < validationIdleTime) {
+      return true;
+    }
+    try {
+      return connection.getPhysicalConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+    } catch (SQLException e) {
+      logger.info("Validate connection[{}] failed.", connection, e);
+      return false;
+    }
+  }
+
+  /**
+   * Removes a connection marked as removed from the pool and closes it.
+   */
+  private void evict(final PooledConnection connection) {
+
+    synchronized (this) {
+      List<PooledConnection> newConnections = newArrayList(connections);
+      newConnections.remove(connection);
+      connections = newConnections.toArray(new PooledConnection[newConnections.size()]);
+    }
+    openConnections.decrementAndGet();
+    signalIdleConnection();
+    try {
+      connection.closePhysicalConnection();
+    } catch (SQLException e) {
+      logger.debug("Close connection[{}] failed.", connection, e);
+    }
+  }
+
+  /**
+   * Opens the minimum number of connections of this pool in parallel, so the
+   * first borrowers do not wait for the handshakes.
+   */
+  private void warmUp() {
+
+    if (minConnectionSizeInPool <= 0) {
+      return;
+    }
+    final ExecutorService warmUpExecutor = Executors.newFixedThreadPool(minConnectionSizeInPool,
+      new ThreadFactory() {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+
+          Thread thread = new Thread(runnable, "dao-pool-warm-up");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    for (int i = 0; i < minConnectionSizeInPool; i++) {
+      warmUpExecutor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+
+          try {
+            newConnection(false);
+          } catch (SQLException e) {
+            logger.warn("Open connection to {} failed.", jdbcUrl, e);
+          }
+        }
+      });
+    }
+    warmUpExecutor.shutdown();
+  }
+
+  /**
+   * Closes the connections idle longer than the max idle time, keeping at least
+   * the minimum number of connections.
+   */
+  private void evictIdleConnections() {
+
+    for (PooledConnection connection : connections) {
+      if (connections.length <= minConnectionSizeInPool) {
+        break;
+      }
+      boolean oversized = openConnections.get() > poolSize;
+      if ((oversized || System.currentTimeMillis() - connection.getLastUsedTime() > maxIdleTime)
+        && connection.markRemoved()) {
+        logger.debug("Connection[{}] idle too much, release from datasourcePool[{}].",
+          connection, this);
+        evict(connection);
+      }
+    }
+  }
+
+  /**
+   * 获取数据库连接，活动连接数达到上限时按先来后到的顺序等待空闲连接，等待超时则抛出
+   * {@link MysqlConnectionTimeoutException}。
+   * <p>
+   * With a permit, the connection this thread returned last is tried first,
+   * then the idle connections are scanned from an offset striped by thread, so
+   * borrowers on different threads rarely contend for the same connection.
+   * Borrowing an idle connection allocates nothing.
    */
   public Connection getConnection() {
 
+    ConnectionBorrowEvent event = FlightRecorderEvents.beginConnectionBorrow();
+    long waitNanos = acquirePermit();
+    borrowWaits.record(waitNanos);
+    if (poolSizer != null) {
+      poolSizer.recordBorrow(waitNanos, getActiveConnections());
+    }
+    PooledConnection connection;
+    boolean opened = false;
     try {
-      Connection connection = connections.poll();
+      connection = borrowIdleConnection();
       if (connection == null) {
-        logger.debug("There no more connection in poll, get a new one.");
-        Class<?> driverClass = Class.forName(JDBC_DRIVER);
-        Driver driver = (Driver) driverClass.newInstance();
-        String mysqlHost = settings.getProperty(HOST_PROPERTY_KEY);
-        connection = driver.connect(mysqlHost.startsWith(JDBC_MYSQL_HOST_PREFIX) ? mysqlHost
-          : JDBC_MYSQL_HOST_PREFIX + mysqlHost, settings);
-        connectionPool.put(connection, System.currentTimeMillis());
-      }
-      return connection;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeout);
+        idleWaiters.incrementAndGet();
+        try {
+          while (true) {
+            long signal = idleSignals.get();
+            connection = borrowIdleConnection();
+            if (connection != null) {
+              break;
+            }
+            logger.debug("There no more connection in poll, get a new one.");
+            connection = newConnection(true);
+            if (connection != null) {
+              opened = true;
+              break;
+            }
+            // The pool is full, so the connection released with our permit is
+            // about to show up idle.
+            awaitIdleSignal(signal, deadline);
+          }
+        } finally {
+          idleWaiters.decrementAndGet();
+        }
+      }
+    } catch (MysqlConnectionException e) {
+      borrowPermits.release();
+      throw e;
+    } catch (InterruptedException e) {
+      borrowPermits.release();
+      Thread.currentThread().interrupt();
+      throw new MysqlConnectionException("Interrupted while waiting for a connection.", e);
+    } catch (Exception e) {
+      borrowPermits.release();
+      throw new MysqlConnectionException(e);
+    }
+    if (leakDetectionThreshold > 0) {
+      connection.setBorrowTrace(new Throwable(format("Connection borrowed by thread[%s].", Thread
+        .currentThread().getName())));
+    }
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.dataSource = getDataSourceKey();
+        event.waitTime = waitNanos;
+        event.newConnection = opened;
+        event.commit();
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * Borrows an idle connection or opens a new one without waiting, returns null
+   * if all connections are borrowed.
+   */
+  Connection tryGetConnection() {
+
+    if (!borrowPermits.tryAcquire()) {
+      return null;
+    }
+    PooledConnection connection;
+    try {
+      connection = borrowIdleConnection();
+      if (connection == null) {
+        connection = newConnection(true);
+      }
+    } catch (MysqlConnectionException e) {
+      borrowPermits.release();
+      throw e;
     } catch (Exception e) {
+      borrowPermits.release();
       throw new MysqlConnectionException(e);
     }
+    if (connection == null) {
+      borrowPermits.release();
+      return null;
+    }
+    borrowWaits.record(0);
+    if (poolSizer != null) {
+      poolSizer.recordBorrow(0, getActiveConnections());
+    }
+    if (leakDetectionThreshold > 0) {
+      connection.setBorrowTrace(new Throwable(format("Connection borrowed by thread[%s].", Thread
+        .currentThread().getName())));
+    }
+    return connection;
+  }
+
+  /**
+   * Opens a connection outside of this pool with its settings, for short work
+   * that must not wait on the pool while its caller may hold the last
+   * connection. The caller closes it.
+   */
+  Connection openUnpooledConnection() throws SQLException {
+
+    return driver.connect(jdbcUrl, settings);
+  }
+
+  /**
+   * Takes a permit without queueing if one is free and nobody waits, otherwise
+   * waits in line for one. Returns how long it waited in nanoseconds.
+   */
+  private long acquirePermit() {
+
+    if (!borrowPermits.hasQueuedThreads() && borrowPermits.tryAcquire()) {
+      return 0;
+    }
+    long startTime = System.nanoTime();
+    try {
+      if (!borrowPermits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+        throw new MysqlConnectionTimeoutException(format(
+          "Timeout after %sms waiting for a connection to %s, all %s connections are active and %s"
+            + " borrowers are waiting.", borrowTimeout, jdbcUrl, poolSize,
+          borrowPermits.getQueueLength()));
+      }
+      return System.nanoTime() - startTime;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MysqlConnectionException("Interrupted while waiting for a connection.", e);
+    }
+  }
+
+  /**
+   * Parks until a connection is returned or evicted after the given signal, or
+   * throws {@link MysqlConnectionTimeoutException} at the deadline.
+   */
+  private void awaitIdleSignal(final long signal, final long deadline)
+    throws InterruptedException {
+
+    synchronized (idleSignals) {
+      while (idleSignals.get() == signal) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new MysqlConnectionTimeoutException(format(
+            "Timeout after %sms waiting for the connection released to %s.", borrowTimeout,
+            jdbcUrl));
+        }
+        TimeUnit.NANOSECONDS.timedWait(idleSignals, remaining);
+      }
+    }
+  }
+
+  /**
+   * Wakes the borrowers parked in {@link #awaitIdleSignal(long, long)}, called
+   * after a connection is returned or evicted. Costs a volatile read when
+   * nobody is parked.
+   */
+  private void signalIdleConnection() {
+
+    if (idleWaiters.get() > 0) {
+      synchronized (idleSignals) {
+        idleSignals.incrementAndGet();
+        idleSignals.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Borrows the connection this thread returned last if it is idle, otherwise
+   * scans the connections from the stripe of the current thread and borrows
+   * the first idle valid one. Returns null if there is none.
+   */
+  private PooledConnection borrowIdleConnection() {
+
+    PooledConnection lastReturned = lastReturnedConnection.get();
+    if (lastReturned != null && lastReturned.markBorrowed()) {
+      if (isValid(lastReturned)) {
+        return lastReturned;
+      }
+      lastReturned.markBroken();
+      evict(lastReturned);
+    }
+    PooledConnection[] snapshot = connections;
+    int size = snapshot.length;
+    if (size == 0) {
+      return null;
+    }
+    int start = (int) (Thread.currentThread().getId() % size);
+    for (int i = 0; i < size; i++) {
+      PooledConnection connection = snapshot[(start + i) % size];
+      if (connection.isIdle() && connection.markBorrowed()) {
+        if (isValid(connection)) {
+          return connection;
+        }
+        connection.markBroken();
+        evict(connection);
+      }
+    }
+    return null;
   }
 
   /**
-   * 释放连接，如果池有空间则放回连接池，如果没有则直接关闭。
+   * 释放连接，将连接放回连接池并唤醒最早等待的借用者。
+   * <p>
+   * Uncommitted work is rolled back and autocommit and read-write restored
+   * first, a connection that can not be reset is closed instead.
    */
   public void freeConnection(final Connection connection) {
 
-    if (connections.size() < maxConnectionSizeInPool) {
-      connections.add(connection);
-      connectionPool.put(connection, System.currentTimeMillis());
+    PooledConnection pooledConnection = (PooledConnection) connection;
+    if (!pooledConnection.isBorrowed()) {
+      logger.warn("Connection[{}] is already returned to the pool.", connection);
+      return;
+    }
+    long holdNanos = System.nanoTime() - pooledConnection.getBorrowTime();
+    if (pooledConnection.isLeakReported()) {
+      logger.info("Connection[{}] reported as leaked is returned after {}ms.", connection,
+        TimeUnit.NANOSECONDS.toMillis(holdNanos));
+    }
+    pooledConnection.setBorrowTrace(null);
+    boolean reset;
+    try {
+      pooledConnection.resetState();
+      reset = true;
+    } catch (SQLException e) {
+      logger.warn("Reset connection[{}] failed, close it.", connection, e);
+      reset = false;
+    }
+    if (!reset || pooledConnection.isCloseOnReturn()) {
+      pooledConnection.markBroken();
+      evict(pooledConnection);
+    } else if (pooledConnection.markReturned()) {
+      lastReturnedConnection.set(pooledConnection);
+      signalIdleConnection();
     } else {
-      try {
-        connection.close();
-      } catch (SQLException e) {
-        logger.debug("Close connection failed.", e);
+      logger.warn("Connection[{}] is already returned to the pool.", connection);
+      return;
+    }
+    borrowPermits.release();
+    if (poolSizer != null) {
+      poolSizer.recordReturn(holdNanos);
+    }
+  }
+
+  /**
+   * Logs the borrowers of the connections held longer than
+   * <code>database.connection.leak.detection.threshold</code>, once per
+   * borrow.
+   */
+  private void detectLeaks() {
+
+    long now = System.nanoTime();
+    long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakDetectionThreshold);
+    for (PooledConnection connection : connections) {
+      Throwable borrowTrace = connection.getBorrowTrace();
+      if (borrowTrace != null && connection.isBorrowed()
+        && now - connection.getBorrowTime() > thresholdNanos && connection.markLeakReported()) {
+        logger.warn("Connection[{}] to {} is held for {}ms, longer than {}ms, possible leak.",
+          connection, jdbcUrl, TimeUnit.NANOSECONDS.toMillis(now - connection.getBorrowTime()),
+          leakDetectionThreshold, borrowTrace);
       }
     }
   }
 
   /**
-   * 关闭所有数据库连接
+   * Applies the size decided by the adaptive sizer for the next interval.
+   */
+  private void resize(final long intervalNanos) {
+
+    int currentSize = poolSize;
+    int nextSize = poolSizer.nextSize(currentSize, borrowPermits.getQueueLength(), intervalNanos);
+    if (nextSize == currentSize) {
+      return;
+    }
+    poolSize = nextSize;
+    if (nextSize > currentSize) {
+      signalIdleConnection();
+      borrowPermits.release(nextSize - currentSize);
+    } else {
+      borrowPermits.reducePermits(currentSize - nextSize);
+    }
+    resizeCount.incrementAndGet();
+    logger.info("Resize pool of {} from {} to {} connections: {} borrows/s, wait {}ms, hold {}ms,"
+      + " peak {} in use.", jdbcUrl, currentSize, nextSize, format("%.1f", poolSizer
+      .getBorrowRate()), format("%.2f", poolSizer.getAverageWaitMillis()), format("%.2f",
+      poolSizer.getAverageHoldMillis()), poolSizer.getPeakInUse());
+  }
+
+  /**
+   * Returns the number of connections currently borrowed from this pool.
+   */
+  @Override
+  public int getActiveConnections() {
+
+    return poolSize - borrowPermits.availablePermits();
+  }
+
+  /**
+   * Returns the current size of this pool, which is the max connections unless
+   * <code>database.pool.adaptive</code> is on.
+   */
+  @Override
+  public int getPoolSize() {
+
+    return poolSize;
+  }
+
+  /**
+   * Returns how many times the adaptive sizing resized this pool.
+   */
+  @Override
+  public long getResizeCount() {
+
+    return resizeCount.get();
+  }
+
+  /**
+   * Identifies the database and user of this pool, pools with the same key can
+   * share connections in a transaction.
+   */
+  String getDataSourceKey() {
+
+    return jdbcUrl + "/" + settings.getProperty(NonRegisteringDriver.DBNAME_PROPERTY_KEY) + "?"
+      + settings.getProperty(NonRegisteringDriver.USER_PROPERTY_KEY);
+  }
+
+  /**
+   * Returns the maximum number of connections of this pool.
+   */
+  @Override
+  public int getMaxConnections() {
+
+    return maxConnectionSizeInPool;
+  }
+
+  /**
+   * Returns an estimate of the number of threads waiting for a connection.
+   */
+  @Override
+  public int getWaitingBorrowers() {
+
+    return borrowPermits.getQueueLength();
+  }
+
+  /**
+   * Returns the number of open connections that are not borrowed.
+   */
+  @Override
+  public int getIdleConnections() {
+
+    int idleConnections = 0;
+    for (PooledConnection connection : connections) {
+      if (connection.isIdle()) {
+        idleConnections++;
+      }
+    }
+    return idleConnections;
+  }
+
+  @Override
+  public int getOpenConnections() {
+
+    return openConnections.get();
+  }
+
+  @Override
+  public long getBorrowCount() {
+
+    return borrowWaits.getCount();
+  }
+
+  @Override
+  public double getBorrowWaitP50Millis() {
+
+    return borrowWaits.getPercentileMillis(50);
+  }
+
+  @Override
+  public double getBorrowWaitP95Millis() {
+
+    return borrowWaits.getPercentileMillis(95);
+  }
+
+  @Override
+  public double getBorrowWaitP99Millis() {
+
+    return borrowWaits.getPercentileMillis(99);
+  }
+
+  @Override
+  public double getBorrowWaitMaxMillis() {
+
+    return borrowWaits.getMaxMillis();
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts of the prepared statement caches
+   * of all connections of this pool.
+   */
+  public CacheStatistics getStatementCacheStatistics() {
+
+    return statementCacheStatistics;
+  }
+
+  /**
+   * Returns the metrics of the given dao method, registered as an MBean on first
+   * use, so a dao created again on this pool reuses them instead of adding a
+   * bean. The beans are unregistered with the pool by
+   * {@link #closeAllConnections()}.
+   */
+  synchronized DaoMethodMetrics getDaoMethodMetrics(final String daoName,
+    final String methodName) {
+
+    String name = format("%s:type=DaoMethod,dao=%s,method=%s", MBeans.DOMAIN, daoName,
+      ObjectName.quote(methodName));
+    DaoMethodMetrics metrics = daoMethodMetrics.get(name);
+    if (metrics == null) {
+      metrics = new DaoMethodMetrics(daoName + "." + methodName);
+      daoMethodMetrics.put(name, metrics);
+      ObjectName objectName = MBeans.register(metrics, name);
+      if (objectName != null) {
+        daoMethodMBeanNames.add(objectName);
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Returns the executor of the asynchronous dao calls on this pool, created on
+   * first use with the given settings and shared by all daos of the pool, so
+   * they can not run more calls at a time than it has connections to lend.
+   */
+  synchronized AsyncExecutor getAsyncExecutor(final int maxConcurrency,
+    final boolean virtualThreads) {
+
+    if (asyncExecutor == null) {
+      asyncExecutor = new AsyncExecutor(maxConcurrency, virtualThreads);
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * Returns the executor of the concurrent page counts on this pool, created on
+   * first use and shared by all daos of the pool. It runs at most the given
+   * number of counts at a time, a count that finds no free thread runs on the
+   * caller.
+   */
+  synchronized Executor getCountExecutor(final int maxConcurrency) {
+
+    if (countExecutor == null) {
+      countExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+          @Override
+          public Thread newThread(final Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "dao-page-count-"
+              + countThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+      countExecutor.allowCoreThreadTimeOut(true);
+    }
+    return countExecutor;
+  }
+
+  private synchronized void unregisterDaoMethodMBeans() {
+
+    for (ObjectName objectName : daoMethodMBeanNames) {
+      MBeans.unregister(objectName);
+    }
+    daoMethodMBeanNames.clear();
+    daoMethodMetrics.clear();
+  }
+
+  private synchronized void shutdownExecutors() {
+
+    if (asyncExecutor != null) {
+      asyncExecutor.shutdown();
+      asyncExecutor = null;
+    }
+    if (countExecutor != null) {
+      countExecutor.shutdown();
+      countExecutor = null;
+    }
+  }
+
+  /**
+   * 关闭所有数据库连接，并停止连接池的维护线程。
+   * <p>
+   * Borrowed connections are closed when their borrowers return them, the
+   * asynchronous calls already started still run.
    */
   public static void closeAllConnections() {
 
     logger.info("Release all connections.");
 
+    synchronized (DataSourcePool.class) {
+      if (maintenanceExecutor != null) {
+        maintenanceExecutor.shutdownNow();
+        maintenanceExecutor = null;
+      }
+    }
+    synchronized (sharedPools) {
+      sharedPools.clear();
+    }
     for (Map.Entry<DataSourcePool, Long> connectionAndConstructTime : dataSourcePools.entrySet()) {
       DataSourcePool dataSourcePool = connectionAndConstructTime.getKey();
-      for (Connection connection : dataSourcePool.connections) {
-        try {
-          connection.close();
-        } catch (SQLException e) {
-          logger.info("Close connection[{}] failed.", connection, e);
+      MBeans.unregister(dataSourcePool.mbeanName);
+      dataSourcePool.unregisterDaoMethodMBeans();
+      dataSourcePool.shutdownExecutors();
+      for (PooledConnection connection : dataSourcePool.connections) {
+        // Flag first, so a connection returned right now is either closed by
+        // its borrower or idle and removed here.
+        connection.markCloseOnReturn();
+        if (connection.markRemoved()) {
+          dataSourcePool.evict(connection);
         }
       }
     }
+    dataSourcePools.clear();
+  }
+
+  /**
+   * Returns the executor that runs the maintenance of all pools on one daemon
+   * thread, it closes the idle connections of all pools every minute.
+   */
+  private static synchronized ScheduledExecutorService getMaintenanceExecutor() {
+
+    if (maintenanceExecutor == null) {
+      maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+
+          Thread thread = new Thread(runnable, "dao-pool-maintenance");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+
+        @Override
+        public void run() {
+
+          try {
+            checkIdleConnections();
+          } catch (RuntimeException e) {
+            logger.warn("Check idle connections failed.", e);
+          }
+        }
+      }, 1, 1, TimeUnit.MINUTES);
+    }
+    return maintenanceExecutor;
+  }
+
+  private static void checkIdleConnections() {
+
+    logger.trace("Check total[{}] DataSourcePool connections idle status .",
+      dataSourcePools.size());
 
+    for (DataSourcePool dataSourcePool : dataSourcePools.keySet()) {
+      dataSourcePool.evictIdleConnections();
+    }
+  }
+
+  /**
+   * Normalizes the connection and pool settings, pools with the same key are
+   * shared.
+   */
+  private static String getPoolKey(final Properties settings) {
+
+    StringBuilder poolKey = new StringBuilder();
+    for (String propertyKey : POOL_PROPERTY_KEYS) {
+      String value = settings.getProperty(propertyKey);
+      if (propertyKey.equals(HOST_PROPERTY_KEY) && value != null
+        && value.startsWith(JDBC_MYSQL_HOST_PREFIX)) {
+        value = value.substring(JDBC_MYSQL_HOST_PREFIX.length());
+      }
+      poolKey.append(value == null ? "" : value.trim()).append('\n');
+    }
+    return poolKey.toString();
   }
 
   private void throwIllegalArgumentExceptionIfNull(final Properties settings,
@@ -141,48 +895,83 @@ public class DataSourcePool {
     }
   }
 
-  private final ConcurrentHashMap<Connection, Long> connectionPool = new ConcurrentHashMap<Connection, Long>();
+
+  private static final Map<String, DataSourcePool> sharedPools =
+    new HashMap<String, DataSourcePool>();
+
+  private static ScheduledExecutorService maintenanceExecutor;
+
+  private static final AtomicInteger countThreadNumber = new AtomicInteger();
 
   private static final ConcurrentHashMap<DataSourcePool, Long> dataSourcePools = new ConcurrentHashMap<DataSourcePool, Long>();
 
-  private Queue<Connection> connections = new ConcurrentLinkedDeque<Connection>();
+  /**
+   * All open connections of this pool, idle or borrowed. The array is replaced
+   * when a connection is opened or evicted, so borrowers scan it without locks.
+   */
+  private volatile PooledConnection[] connections = new PooledConnection[0];
+
+  private final AtomicInteger openConnections = new AtomicInteger();
+
+  /**
+   * The number of borrowers with a permit parked until a connection shows up
+   * idle, and the count of the wake ups sent to them, which they wait on.
+   */
+  private final AtomicInteger idleWaiters = new AtomicInteger();
+
+  private final AtomicLong idleSignals = new AtomicLong();
+
+  private final ThreadLocal<PooledConnection> lastReturnedConnection =
+    new ThreadLocal<PooledConnection>();
+
+  private final CacheStatistics statementCacheStatistics = new CacheStatistics();
 
   private Properties settings = new Properties();
 
+  private final ResizableSemaphore borrowPermits;
+
+  private final AdaptivePoolSizer poolSizer;
+
+  /**
+   * The number of connections that can be borrowed at a time.
+   */
+  private volatile int poolSize;
+
+  private final AtomicLong resizeCount = new AtomicLong();
+
+  private final LatencyHistogram borrowWaits = new LatencyHistogram();
+
+  private final ObjectName mbeanName;
+
+  private final Map<String, DaoMethodMetrics> daoMethodMetrics = newHashMap();
+
+  private final List<ObjectName> daoMethodMBeanNames = newArrayList();
+
+  private AsyncExecutor asyncExecutor;
+
+  private ThreadPoolExecutor countExecutor;
+
+  private final Driver driver;
+
+  private final String jdbcUrl;
+
+  private long borrowTimeout;
+
+  private long validationIdleTime;
+
+  /**
+   * How long a connection may be held before its borrower is logged as a
+   * possible leak, 0 turns leak detection off.
+   */
+  private long leakDetectionThreshold;
+
   private int maxIdleTime;
 
   private int minConnectionSizeInPool;
 
   private int maxConnectionSizeInPool;
 
-  static {
-    Timer timer = new Timer();
-    timer.schedule(new TimerTask() {
-
-      @Override
-      public void run() {
-
-        logger.trace("Check total[{}] DataSourcePool connections idle status .",
-          dataSourcePools.size());
-
-        for (Map.Entry<DataSourcePool, Long> connectionAndConstructTime : dataSourcePools
-          .entrySet()) {
-          DataSourcePool dataSourcePool = connectionAndConstructTime.getKey();
-          for (Map.Entry<Connection, Long> dataSourcePoolAndLastUsedTime : dataSourcePool.connectionPool
-            .entrySet()) {
-            Connection connection = dataSourcePoolAndLastUsedTime.getKey();
-            long idleTime = System.currentTimeMillis() - dataSourcePoolAndLastUsedTime.getValue();
-            if (idleTime > dataSourcePool.maxIdleTime
-              && dataSourcePool.connections.size() > dataSourcePool.minConnectionSizeInPool) {
-              logger.debug("Connection[{}] idle too much, release from datasourcePool[{}].",
-                connection, dataSourcePool);
-              dataSourcePool.connections.remove(connection);
-            }
-          }
-        }
-      }
-    }, 0, TimeUnit.MINUTES.toMillis(5));
-  }
+  private int statementCacheSize;
 
   private static final String JDBC_MYSQL_HOST_PREFIX = "jdbc:mysql://";
 
@@ -200,9 +989,55 @@ public class DataSourcePool {
 
   private static final String CONNECTION_MAX_IDLE_TIME = "database.connection.max.idle.time";
 
+  private static final String CONNECTION_BORROW_TIMEOUT = "database.connection.borrow.timeout";
+
+  private static final String CONNECTION_VALIDATION_IDLE_TIME =
+    "database.connection.validation.idle.time";
+
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+  private static final String CONNECTION_LEAK_DETECTION_THRESHOLD =
+    "database.connection.leak.detection.threshold";
+
   private static final String MIN_CONNECTION_SIZE_IN_POOL = "database.min.connection.in.pool";
 
   private static final String MAX_CONNECTION_SIZE_IN_POOL = "database.max.connection.in.pool";
 
+  private static final String STATEMENT_CACHE_SIZE = "database.statement.cache.size";
+
+  private static final String SERVER_PREPARED_STATEMENTS = "database.server.prepared.statements";
+
+  private static final String USE_SERVER_PREPARED_STATEMENTS = "useServerPrepStmts";
+
+  /**
+   * A fair semaphore whose permits can be taken away when the pool shrinks.
+   */
+  private static class ResizableSemaphore extends Semaphore {
+
+    ResizableSemaphore(final int permits) {
+
+      super(permits, true);
+    }
+
+    @Override
+    protected void reducePermits(final int reduction) {
+
+      super.reducePermits(reduction);
+    }
+
+    private static final long serialVersionUID = 3904468016402451287L;
+
+  }
+
+  private static final String ADAPTIVE_POOL = "database.pool.adaptive";
+
+  private static final String ADAPTIVE_POOL_INTERVAL = "database.pool.adaptive.interval";
+
+  private static final String[] POOL_PROPERTY_KEYS = { HOST_PROPERTY_KEY, PORT_PROPERTY_KEY,
+      DBNAME_PROPERTY_KEY, USER_PROPERTY_KEY, PASSWORD_PROPERTY_KEY, MAX_CONNECTION_SIZE_IN_POOL,
+      MIN_CONNECTION_SIZE_IN_POOL, CONNECTION_MAX_IDLE_TIME, CONNECTION_BORROW_TIMEOUT,
+      CONNECTION_VALIDATION_IDLE_TIME, STATEMENT_CACHE_SIZE, SERVER_PREPARED_STATEMENTS,
+      ADAPTIVE_POOL, ADAPTIVE_POOL_INTERVAL, CONNECTION_LEAK_DETECTION_THRESHOLD };
+
   private static final Logger logger = LoggerFactory.getLogger(DataSourcePool.class);
 }
@@ -0,0 +1,34 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Gauges of a {@link DataSourcePool}, registered as
+ * <code>org.codelogger.dao:type=DataSourcePool,name={url/database}</code>.
+ * Borrow waits are in milliseconds.
+ */
+public interface DataSourcePoolMXBean {
+
+  int getActiveConnections();
+
+  int getIdleConnections();
+
+  int getOpenConnections();
+
+  int getWaitingBorrowers();
+
+  int getPoolSize();
+
+  int getMaxConnections();
+
+  long getResizeCount();
+
+  long getBorrowCount();
+
+  double getBorrowWaitP50Millis();
+
+  double getBorrowWaitP95Millis();
+
+  double getBorrowWaitP99Millis();
+
+  double getBorrowWaitMaxMillis();
+
+}
@@ -0,0 +1,137 @@
+package org.codelogger.dao.mysql;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codelogger.utils.StringUtils;
+
+/**
+ * Routes reads to the replica pools and writes to the primary pool. Replicas
+ * are configured by <code>database.replica.hosts</code>, a comma separated
+ * list of hosts, optionally with a port, that otherwise share the settings of
+ * the primary. Reads are balanced by the least connections in use, or round
+ * robin when <code>database.replica.balance</code> is
+ * <code>round-robin</code>.
+ */
+public class DataSourceRouter {
+
+  public DataSourceRouter(final Properties settings) {
+
+    primary = DataSourcePool.getInstance(settings);
+    String replicaHosts = settings.getProperty(REPLICA_HOSTS_PROPERTY_KEY);
+    if (StringUtils.isBlank(replicaHosts)) {
+      replicas = new DataSourcePool[0];
+    } else {
+      String[] hosts = replicaHosts.split(",");
+      replicas = new DataSourcePool[hosts.length];
+      for (int i = 0; i < hosts.length; i++) {
+        Properties replicaSettings = new Properties();
+        replicaSettings.putAll(settings);
+        replicaSettings.setProperty(HOST_PROPERTY_KEY, hosts[i].trim());
+        replicas[i] = DataSourcePool.getInstance(replicaSettings);
+      }
+    }
+    roundRobin = ROUND_ROBIN.equalsIgnoreCase(settings.getProperty(REPLICA_BALANCE_PROPERTY_KEY));
+  }
+
+  /**
+   * Returns the pool of the primary, which takes all writes.
+   */
+  public DataSourcePool getPrimary() {
+
+    return primary;
+  }
+
+  /**
+   * Returns the pool to read from: the primary if there is no replica, the
+   * current thread reads from the primary or is in a transaction, otherwise
+   * one of the replicas.
+   */
+  public DataSourcePool getReadPool() {
+
+    if (replicas.length == 0 || isReadingFromPrimary() || Transactions.isActive()) {
+      return primary;
+    }
+    if (replicas.length == 1) {
+      return replicas[0];
+    }
+    if (roundRobin) {
+      return replicas[(nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicas.length];
+    }
+    int start = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+    DataSourcePool leastUsed = replicas[start];
+    int leastActiveConnections = leastUsed.getActiveConnections();
+    for (int i = 1; i < replicas.length && leastActiveConnections > 0; i++) {
+      DataSourcePool replica = replicas[(start + i) % replicas.length];
+      int activeConnections = replica.getActiveConnections();
+      if (activeConnections < leastActiveConnections) {
+        leastUsed = replica;
+        leastActiveConnections = activeConnections;
+      }
+    }
+    return leastUsed;
+  }
+
+  /**
+   * Returns the maximum number of connections of the primary and all replicas.
+   */
+  public int getMaxConnections() {
+
+    int maxConnections = primary.getMaxConnections();
+    for (DataSourcePool replica : replicas) {
+      maxConnections += replica.getMaxConnections();
+    }
+    return maxConnections;
+  }
+
+  /**
+   * Makes the reads of the current thread go to the primary until the matching
+   * {@link #endPrimaryReads()}, so a caller can read its own writes. Calls may
+   * be nested.
+   */
+  public static void beginPrimaryReads() {
+
+    primaryReadDepth.set(primaryReadDepth.get() + 1);
+  }
+
+  public static void endPrimaryReads() {
+
+    int depth = primaryReadDepth.get();
+    if (depth <= 1) {
+      primaryReadDepth.remove();
+    } else {
+      primaryReadDepth.set(depth - 1);
+    }
+  }
+
+  public static boolean isReadingFromPrimary() {
+
+    return primaryReadDepth.get() > 0;
+  }
+
+  private final DataSourcePool primary;
+
+  private final DataSourcePool[] replicas;
+
+  private final boolean roundRobin;
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  private static final ThreadLocal<Integer> primaryReadDepth = new ThreadLocal<Integer>() {
+
+    @Override
+    protected Integer initialValue() {
+
+      return 0;
+    }
+  };
+
+  private static final String HOST_PROPERTY_KEY = "database.host";
+
+  private static final String REPLICA_HOSTS_PROPERTY_KEY = "database.replica.hosts";
+
+  private static final String REPLICA_BALANCE_PROPERTY_KEY = "database.replica.balance";
+
+  private static final String ROUND_ROBIN = "round-robin";
+
+}
@@ -0,0 +1,312 @@
+package org.codelogger.dao.mysql;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.String.format;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The where, order by and limit clauses of a derived dao method like
+ * <code>findFirst10ByAgeGreaterThanAndNameStartingWithOrderByAgeDesc</code>,
+ * <code>existsByEmail</code>, <code>countByAgeBetween</code> or
+ * <code>deleteByNameIsNull</code>. The predicates are split on
+ * <code>Or</code>, then on <code>And</code>, each one is a property of the
+ * entity followed by an optional operator, and consumes the next method
+ * arguments in order.
+ */
+class DerivedQuery {
+
+  /**
+   * What a derived method does with the rows matching its predicates.
+   */
+  enum Subject {
+    FIND, EXISTS, COUNT, DELETE
+  }
+
+  /**
+   * How the argument of a like predicate is turned into a pattern. Only
+   * {@link #STARTING_WITH} can use an index.
+   */
+  enum LikeMode {
+
+    STARTING_WITH, ENDING_WITH, CONTAINING;
+
+    /**
+     * Escapes the wildcards of the given value and adds the ones of this mode.
+     */
+    Object toPattern(final Object value) {
+
+      if (value == null) {
+        return null;
+      }
+      String escaped = value.toString().replace("\\", "\\\\").replace("%", "\\%").replace("_",
+        "\\_");
+      return this == STARTING_WITH ? escaped + "%" : this == ENDING_WITH ? "%" + escaped : "%"
+        + escaped + "%";
+    }
+
+  }
+
+  private enum Operator {
+
+    IS_NOT_NULL("IsNotNull", " is not null", 0), NOT_NULL("NotNull", " is not null", 0),
+    IS_NULL("IsNull", " is null", 0), NULL("Null", " is null", 0),
+    BETWEEN("Between", " between ? and ?", 2),
+    LESS_THAN_EQUAL("LessThanEqual", " <= ?", 1), LESS_THAN("LessThan", " < ?", 1),
+    GREATER_THAN_EQUAL("GreaterThanEqual", " >= ?", 1), GREATER_THAN("GreaterThan", " > ?", 1),
+    NOT_IN("NotIn", " not in (?)", 1), IN("In", " in (?)", 1),
+    NOT_LIKE("NotLike", " not like ?", 1), LIKE("Like", " like ?", 1),
+    STARTING_WITH("StartingWith", " like ?", 1, LikeMode.STARTING_WITH),
+    ENDING_WITH("EndingWith", " like ?", 1, LikeMode.ENDING_WITH),
+    CONTAINING("Containing", " like ?", 1, LikeMode.CONTAINING), NOT("Not", " <> ?", 1),
+    EQUALS("Equals", " = ?", 1), IS("Is", " = ?", 1);
+
+    private Operator(final String keyword, final String sql, final int arguments) {
+
+      this(keyword, sql, arguments, null);
+    }
+
+    private Operator(final String keyword, final String sql, final int arguments,
+      final LikeMode likeMode) {
+
+      this.keyword = keyword;
+      this.sql = sql;
+      this.arguments = arguments;
+      this.likeMode = likeMode;
+    }
+
+    private final String keyword;
+
+    private final String sql;
+
+    private final int arguments;
+
+    private final LikeMode likeMode;
+
+  }
+
+  /**
+   * @param methodName
+   *          the name of a derived method, see {@link #isDerived(String)}.
+   * @param propertyToColumn
+   *          the column of each property of the entity, by the property name
+   *          with its first char in upper case.
+   */
+  DerivedQuery(final String methodName, final Map<String, String> propertyToColumn) {
+
+    Matcher matcher = derivedMethodPattern.matcher(methodName);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(format("%s is not a derived query method.", methodName));
+    }
+    this.methodName = methodName;
+    this.propertyToColumn = propertyToColumn;
+    subject = Subject.valueOf(matcher.group(1).toUpperCase());
+    if (matcher.group(2) != null) {
+      limit = matcher.group(3).isEmpty() ? 1 : Integer.parseInt(matcher.group(3));
+      if (limit < 1) {
+        throw new IllegalArgumentException(format("%s limits to no rows.", methodName));
+      }
+    }
+    String criteria = matcher.group(4);
+    Matcher orderByMatcher = orderByPattern.matcher(criteria);
+    if (orderByMatcher.find()) {
+      orderBySql = buildOrderBySql(criteria.substring(orderByMatcher.end()));
+      criteria = criteria.substring(0, orderByMatcher.start());
+    }
+    if (!criteria.isEmpty()) {
+      whereSql = buildWhereSql(criteria);
+    }
+    if (subject != Subject.FIND && (limit > 0 || !orderBySql.isEmpty())) {
+      throw new IllegalArgumentException(format(
+        "%s can not use First, Top or OrderBy, only find methods can.", methodName));
+    }
+    if (subject == Subject.DELETE && whereSql.isEmpty()) {
+      throw new IllegalArgumentException(format(
+        "%s has no predicate, it would delete all rows.", methodName));
+    }
+  }
+
+  /**
+   * Returns true if the given method name is a derived query like
+   * <code>findByName</code>, <code>findTop3ByAgeGreaterThan</code>,
+   * <code>findAllByOrderByNameAsc</code> or <code>countByName</code>.
+   */
+  static boolean isDerived(final String methodName) {
+
+    return derivedMethodPattern.matcher(methodName).matches();
+  }
+
+  Subject getSubject() {
+
+    return subject;
+  }
+
+  /**
+   * Returns the where clause with a leading space, empty if there is no
+   * predicate.
+   */
+  String getWhereSql() {
+
+    return whereSql;
+  }
+
+  /**
+   * Returns the order by clause with a leading space, empty if the method has
+   * no <code>OrderBy</code>.
+   */
+  String getOrderBySql() {
+
+    return orderBySql;
+  }
+
+  /**
+   * Returns the maximum number of rows of <code>findFirstN</code> and
+   * <code>findTopN</code>, 0 for no limit.
+   */
+  int getLimit() {
+
+    return limit;
+  }
+
+  /**
+   * Returns the limit clause with a leading space, empty if there is no limit.
+   */
+  String getLimitSql() {
+
+    return limit == 0 ? "" : " limit " + limit;
+  }
+
+  /**
+   * Returns the number of method arguments bound by the predicates, they are
+   * the first ones of the method.
+   */
+  int getArgumentCount() {
+
+    return likeModes.size();
+  }
+
+  /**
+   * Returns the like mode of each placeholder of the where clause, null if
+   * none of them needs one.
+   */
+  LikeMode[] getLikeModes() {
+
+    for (LikeMode likeMode : likeModes) {
+      if (likeMode != null) {
+        return likeModes.toArray(new LikeMode[likeModes.size()]);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the argument of each placeholder of the where clause.
+   */
+  int[] getArgumentIndexes() {
+
+    int[] argumentIndexes = new int[likeModes.size()];
+    for (int i = 0; i < argumentIndexes.length; i++) {
+      argumentIndexes[i] = i;
+    }
+    return argumentIndexes;
+  }
+
+  private String buildWhereSql(final String criteria) {
+
+    StringBuilder sqlBuilder = new StringBuilder(" where ");
+    String[] disjunctions = orPattern.split(criteria);
+    for (int i = 0; i < disjunctions.length; i++) {
+      sqlBuilder.append(i == 0 ? "" : " or ");
+      String[] predicates = andPattern.split(disjunctions[i]);
+      for (int j = 0; j < predicates.length; j++) {
+        sqlBuilder.append(j == 0 ? "" : " and ");
+        appendPredicate(sqlBuilder, predicates[j]);
+      }
+    }
+    return sqlBuilder.toString();
+  }
+
+  private void appendPredicate(final StringBuilder sqlBuilder, final String predicate) {
+
+    for (Operator operator : Operator.values()) {
+      if (predicate.endsWith(operator.keyword)) {
+        String column = propertyToColumn.get(predicate.substring(0, predicate.length()
+          - operator.keyword.length()));
+        if (column != null) {
+          appendPredicate(sqlBuilder, column, operator);
+          return;
+        }
+      }
+    }
+    appendPredicate(sqlBuilder, getColumn(predicate), Operator.EQUALS);
+  }
+
+  private void appendPredicate(final StringBuilder sqlBuilder, final String column,
+    final Operator operator) {
+
+    sqlBuilder.append(column).append(operator.sql);
+    for (int i = 0; i < operator.arguments; i++) {
+      likeModes.add(operator.likeMode);
+    }
+  }
+
+  private String buildOrderBySql(final String orders) {
+
+    if (orders.isEmpty()) {
+      throw new IllegalArgumentException(format("%s has no property after OrderBy.", methodName));
+    }
+    StringBuilder sqlBuilder = new StringBuilder(" order by ");
+    String[] properties = orderSeparatorPattern.split(orders);
+    for (int i = 0; i < properties.length; i++) {
+      String property = properties[i];
+      String direction = " asc";
+      if (property.endsWith("Desc")) {
+        property = property.substring(0, property.length() - "Desc".length());
+        direction = " desc";
+      } else if (property.endsWith("Asc")) {
+        property = property.substring(0, property.length() - "Asc".length());
+      }
+      sqlBuilder.append(i == 0 ? "" : ",").append(getColumn(property)).append(direction);
+    }
+    return sqlBuilder.toString();
+  }
+
+  private String getColumn(final String property) {
+
+    String column = propertyToColumn.get(property);
+    if (column == null) {
+      throw new IllegalArgumentException(format("%s refers to unknown property %s.", methodName,
+        property));
+    }
+    return column;
+  }
+
+  private final String methodName;
+
+  private final Map<String, String> propertyToColumn;
+
+  private final Subject subject;
+
+  private final List<LikeMode> likeModes = newArrayList();
+
+  private String whereSql = "";
+
+  private String orderBySql = "";
+
+  private int limit;
+
+  private static final Pattern derivedMethodPattern = Pattern.compile(
+    "(find|exists|count|delete)(?:(First|Top)(\\d*))?(?:All)?By(.*)");
+
+  private static final Pattern orderByPattern = Pattern.compile("OrderBy(?=\\p{Lu}|$)");
+
+  private static final Pattern orPattern = Pattern.compile("Or(?=\\p{Lu})");
+
+  private static final Pattern andPattern = Pattern.compile("And(?=\\p{Lu})");
+
+  private static final Pattern orderSeparatorPattern = Pattern.compile("(?<=Asc|Desc)(?=\\p{Lu})");
+
+}
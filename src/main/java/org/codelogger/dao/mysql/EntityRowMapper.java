@@ -0,0 +1,259 @@
+package org.codelogger.dao.mysql;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.codelogger.dao.exception.DataAccessException;
+
+/**
+ * Maps result set rows to entities. The constructor and the field setters of
+ * the entity are resolved to method handles once, column indexes are resolved
+ * once per result set, and primitive fields are read and written without
+ * boxing.
+ */
+public class EntityRowMapper<E> {
+
+  /**
+   * @param entityClass
+   *          the entity class, it must have a no-arg constructor.
+   * @param fields
+   *          the mapped fields of the entity.
+   * @param columnNames
+   *          the column name of each field.
+   */
+  public EntityRowMapper(final Class<E> entityClass, final List<Field> fields,
+    final List<String> columnNames) {
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      Constructor<E> constructor = entityClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      this.constructor = lookup.unreflectConstructor(constructor).asType(
+        methodType(Object.class));
+      this.columnNames = columnNames.toArray(new String[columnNames.size()]);
+      fieldWriters = new FieldWriter[fields.size()];
+      getters = new MethodHandle[fields.size()];
+      setters = new MethodHandle[fields.size()];
+      for (int i = 0; i < fieldWriters.length; i++) {
+        Field field = fields.get(i);
+        field.setAccessible(true);
+        MethodHandle setter = lookup.unreflectSetter(field);
+        fieldWriters[i] = new FieldWriter(field.getType(), setter);
+        getters[i] = lookup.unreflectGetter(field).asType(methodType(Object.class, Object.class));
+        setters[i] = setter.asType(methodType(void.class, Object.class, Object.class));
+      }
+    } catch (NoSuchMethodException e) {
+      throw new DataAccessException(entityClass.getName() + " has no no-arg constructor.", e);
+    } catch (IllegalAccessException e) {
+      throw new DataAccessException(e);
+    }
+  }
+
+  /**
+   * Resolves the column index of each mapped field in the given result set, 0
+   * if the result set has no such column.
+   */
+  public int[] getColumnIndexes(final ResultSet resultSet) throws SQLException {
+
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    int columnCount = metaData.getColumnCount();
+    int[] columnIndexes = new int[columnNames.length];
+    for (int i = 1; i <= columnCount; i++) {
+      String columnLabel = metaData.getColumnLabel(i);
+      for (int j = 0; j < columnNames.length; j++) {
+        if (columnIndexes[j] == 0 && columnNames[j].equalsIgnoreCase(columnLabel)) {
+          columnIndexes[j] = i;
+          break;
+        }
+      }
+    }
+    return columnIndexes;
+  }
+
+  /**
+   * Maps the current row of the result set to a new entity.
+   */
+  @SuppressWarnings("unchecked")
+  public E mapRow(final ResultSet resultSet, final int[] columnIndexes) throws SQLException {
+
+    try {
+      Object entity = constructor.invokeExact();
+      for (int i = 0; i < fieldWriters.length; i++) {
+        if (columnIndexes[i] > 0) {
+          fieldWriters[i].write(resultSet, columnIndexes[i], entity);
+        }
+      }
+      return (E) entity;
+    } catch (SQLException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new DataAccessException(e);
+    }
+  }
+
+  /**
+   * Returns a shallow copy of the mapped fields of the given entity.
+   */
+  @SuppressWarnings("unchecked")
+  public E copy(final E entity) {
+
+    try {
+      Object copy = constructor.invokeExact();
+      for (int i = 0; i < getters.length; i++) {
+        setters[i].invokeExact(copy, (Object) getters[i].invokeExact((Object) entity));
+      }
+      return (E) copy;
+    } catch (Throwable e) {
+      throw new DataAccessException(e);
+    }
+  }
+
+  /**
+   * Reads a column with the typed getter of the field type and writes it to the
+   * field. Null values leave the field untouched.
+   */
+  private static class FieldWriter {
+
+    FieldWriter(final Class<?> type, final MethodHandle setter) {
+
+      if (type.isPrimitive()) {
+        this.setter = setter.asType(methodType(void.class, Object.class, type));
+      } else {
+        this.setter = setter.asType(methodType(void.class, Object.class, Object.class));
+      }
+      if (type == int.class) {
+        kind = INT;
+      } else if (type == Integer.class) {
+        kind = INTEGER_OBJECT;
+      } else if (type == long.class) {
+        kind = LONG;
+      } else if (type == Long.class) {
+        kind = LONG_OBJECT;
+      } else if (type == String.class) {
+        kind = STRING;
+      } else if (type == boolean.class) {
+        kind = BOOLEAN;
+      } else if (type == Boolean.class) {
+        kind = BOOLEAN_OBJECT;
+      } else if (type == byte.class) {
+        kind = BYTE;
+      } else if (type == Byte.class) {
+        kind = BYTE_OBJECT;
+      } else if (type == short.class) {
+        kind = SHORT;
+      } else if (type == Short.class) {
+        kind = SHORT_OBJECT;
+      } else {
+        kind = UNSUPPORTED;
+      }
+    }
+
+    void write(final ResultSet resultSet, final int columnIndex, final Object entity)
+      throws Throwable {
+
+      switch (kind) {
+      case INT:
+        setter.invokeExact(entity, resultSet.getInt(columnIndex));
+        break;
+      case INTEGER_OBJECT:
+        int intValue = resultSet.getInt(columnIndex);
+        if (!resultSet.wasNull()) {
+          setter.invokeExact(entity, (Object) intValue);
+        }
+        break;
+      case LONG:
+        setter.invokeExact(entity, resultSet.getLong(columnIndex));
+        break;
+      case LONG_OBJECT:
+        long longValue = resultSet.getLong(columnIndex);
+        if (!resultSet.wasNull()) {
+          setter.invokeExact(entity, (Object) longValue);
+        }
+        break;
+      case STRING:
+        String stringValue = resultSet.getString(columnIndex);
+        if (stringValue != null) {
+          setter.invokeExact(entity, (Object) stringValue);
+        }
+        break;
+      case BOOLEAN:
+        setter.invokeExact(entity, resultSet.getBoolean(columnIndex));
+        break;
+      case BOOLEAN_OBJECT:
+        boolean booleanValue = resultSet.getBoolean(columnIndex);
+        if (!resultSet.wasNull()) {
+          setter.invokeExact(entity, (Object) booleanValue);
+        }
+        break;
+      case BYTE:
+        setter.invokeExact(entity, resultSet.getByte(columnIndex));
+        break;
+      case BYTE_OBJECT:
+        byte byteValue = resultSet.getByte(columnIndex);
+        if (!resultSet.wasNull()) {
+          setter.invokeExact(entity, (Object) byteValue);
+        }
+        break;
+      case SHORT:
+        setter.invokeExact(entity, resultSet.getShort(columnIndex));
+        break;
+      case SHORT_OBJECT:
+        short shortValue = resultSet.getShort(columnIndex);
+        if (!resultSet.wasNull()) {
+          setter.invokeExact(entity, (Object) shortValue);
+        }
+        break;
+      default:
+        break;
+      }
+    }
+
+    private final MethodHandle setter;
+
+    private final int kind;
+
+    private static final int UNSUPPORTED = 0;
+
+    private static final int INT = 1;
+
+    private static final int INTEGER_OBJECT = 2;
+
+    private static final int LONG = 3;
+
+    private static final int LONG_OBJECT = 4;
+
+    private static final int STRING = 5;
+
+    private static final int BOOLEAN = 6;
+
+    private static final int BOOLEAN_OBJECT = 7;
+
+    private static final int BYTE = 8;
+
+    private static final int BYTE_OBJECT = 9;
+
+    private static final int SHORT = 10;
+
+    private static final int SHORT_OBJECT = 11;
+
+  }
+
+  private final MethodHandle constructor;
+
+  private final String[] columnNames;
+
+  private final FieldWriter[] fieldWriters;
+
+  private final MethodHandle[] getters;
+
+  private final MethodHandle[] setters;
+
+}
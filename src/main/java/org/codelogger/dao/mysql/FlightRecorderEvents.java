@@ -0,0 +1,73 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Begins the flight recorder events of daos and pools. The events are off
+ * unless enabled in the recording settings, then no event is created, and on
+ * a jvm without <code>jdk.jfr</code> no event class is loaded.
+ */
+final class FlightRecorderEvents {
+
+  private FlightRecorderEvents() {
+
+  }
+
+  /**
+   * Returns a begun dao call event, null if the event is off.
+   */
+  static DaoCallEvent beginDaoCall() {
+
+    if (daoCallProbe == null || !daoCallProbe.isEnabled()) {
+      return null;
+    }
+    DaoCallEvent event = new DaoCallEvent();
+    event.begin();
+    return event;
+  }
+
+  static ConnectionBorrowEvent beginConnectionBorrow() {
+
+    if (connectionBorrowProbe == null || !connectionBorrowProbe.isEnabled()) {
+      return null;
+    }
+    ConnectionBorrowEvent event = new ConnectionBorrowEvent();
+    event.begin();
+    return event;
+  }
+
+  static ResultMappingEvent beginResultMapping() {
+
+    if (resultMappingProbe == null || !resultMappingProbe.isEnabled()) {
+      return null;
+    }
+    ResultMappingEvent event = new ResultMappingEvent();
+    event.begin();
+    return event;
+  }
+
+  private static boolean isFlightRecorderAvailable() {
+
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Instances only asked whether their event type is enabled.
+   */
+  private static final DaoCallEvent daoCallProbe;
+
+  private static final ConnectionBorrowEvent connectionBorrowProbe;
+
+  private static final ResultMappingEvent resultMappingProbe;
+
+  static {
+    boolean available = isFlightRecorderAvailable();
+    daoCallProbe = available ? new DaoCallEvent() : null;
+    connectionBorrowProbe = available ? new ConnectionBorrowEvent() : null;
+    resultMappingProbe = available ? new ResultMappingEvent() : null;
+  }
+
+}
@@ -0,0 +1,131 @@
+package org.codelogger.dao.mysql;
+
+import static java.lang.String.format;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.codelogger.dao.exception.MysqlSqlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out ids from blocks reserved in a sequence table. A block of
+ * <code>allocationSize</code> ids is reserved with a single atomic update, the
+ * ids in it are then handed out without touching the database.
+ * <p>
+ * A block is reserved in its own transaction, never in the one of the caller,
+ * which could roll it back after its ids are handed out. As the caller may
+ * hold the last connection of the pool, in a transaction or a batch, the
+ * reservation does not wait for one: it borrows a free connection, or opens
+ * one outside of the pool when there is none.
+ */
+public class HiLoIdGenerator {
+
+  public HiLoIdGenerator(final DataSourcePool dataSourcePool, final String sequenceTable,
+    final String sequenceName, final int allocationSize, final String tableName,
+    final String idName) {
+
+    if (allocationSize < 1) {
+      throw new IllegalArgumentException("Allocation size must be positive.");
+    }
+    this.dataSourcePool = dataSourcePool;
+    this.sequenceName = sequenceName;
+    this.allocationSize = allocationSize;
+    reserveSql = format("update %s set next_val = last_insert_id(next_val + ?) where name = ?",
+      sequenceTable);
+    initializeSql = format(
+      "insert ignore into %s (name, next_val) select ?, coalesce(max(%s), 0) + 1 from %s",
+      sequenceTable, idName, tableName);
+  }
+
+  public synchronized long nextId() {
+
+    if (nextId >= limit) {
+      reserveBlock();
+    }
+    return nextId++;
+  }
+
+  private void reserveBlock() {
+
+    Connection connection = dataSourcePool.tryGetConnection();
+    boolean pooled = connection != null;
+    try {
+      if (!pooled) {
+        connection = dataSourcePool.openUnpooledConnection();
+      }
+      long newLimit = reserve(connection);
+      if (newLimit < 0) {
+        try (PreparedStatement statement = connection.prepareStatement(initializeSql)) {
+          statement.setString(1, sequenceName);
+          statement.executeUpdate();
+        }
+        newLimit = reserve(connection);
+      }
+      limit = newLimit;
+      nextId = newLimit - allocationSize;
+      logger.debug("Reserved ids [{}, {}) of sequence[{}].", nextId, limit, sequenceName);
+    } catch (SQLException e) {
+      throw new MysqlSqlException(e);
+    } finally {
+      if (pooled) {
+        dataSourcePool.freeConnection(connection);
+      } else if (connection != null) {
+        closeQuietly(connection);
+      }
+    }
+  }
+
+  private void closeQuietly(final Connection connection) {
+
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      logger.debug("Close connection of sequence[{}] failed.", sequenceName, e);
+    }
+  }
+
+  /**
+   * Moves the sequence forward by one block and returns the new next value, -1
+   * if the sequence does not exist yet.
+   */
+  private long reserve(final Connection connection) throws SQLException {
+
+    int updatedRows;
+    try (PreparedStatement statement = connection.prepareStatement(reserveSql)) {
+      statement.setInt(1, allocationSize);
+      statement.setString(2, sequenceName);
+      updatedRows = statement.executeUpdate();
+    }
+    if (updatedRows == 0) {
+      return -1;
+    }
+    try (PreparedStatement statement = connection.prepareStatement(LAST_INSERT_ID_SQL);
+      ResultSet resultSet = statement.executeQuery()) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+
+  private final DataSourcePool dataSourcePool;
+
+  private final String sequenceName;
+
+  private final int allocationSize;
+
+  private final String reserveSql;
+
+  private final String initializeSql;
+
+  private long nextId;
+
+  private long limit;
+
+  private static final String LAST_INSERT_ID_SQL = "select last_insert_id()";
+
+  private static final Logger logger = LoggerFactory.getLogger(HiLoIdGenerator.class);
+
+}
@@ -0,0 +1,117 @@
+package org.codelogger.dao.mysql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches entities by id for a fixed time, the least recently used entities are
+ * evicted when the cache is full. Each eviction by a write bumps a generation,
+ * so a value read from the database before that write is not cached.
+ */
+class IdCache<E> {
+
+  IdCache(final int maxSize, final long ttl) {
+
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Returns the cached entity, null if there is none or it has expired.
+   */
+  synchronized E get(final Object id) {
+
+    CachedEntity<E> cachedEntity = entities.get(id);
+    if (cachedEntity == null) {
+      statistics.recordMiss();
+      return null;
+    }
+    if (cachedEntity.expireTime < System.currentTimeMillis()) {
+      entities.remove(id);
+      statistics.recordMiss();
+      return null;
+    }
+    statistics.recordHit();
+    return cachedEntity.entity;
+  }
+
+  /**
+   * Returns the generation to pass to {@link #put(Object, Object, long)} for a
+   * value about to be read from the database.
+   */
+  synchronized long getGeneration() {
+
+    return generation;
+  }
+
+  /**
+   * Caches the entity unless the cache was written since the given generation.
+   */
+  synchronized void put(final Object id, final E entity, final long readGeneration) {
+
+    if (readGeneration == generation) {
+      entities.put(id, new CachedEntity<E>(entity, System.currentTimeMillis() + ttl));
+    }
+  }
+
+  synchronized void remove(final Object id) {
+
+    generation++;
+    entities.remove(id);
+  }
+
+  synchronized void clear() {
+
+    generation++;
+    entities.clear();
+  }
+
+  synchronized int size() {
+
+    return entities.size();
+  }
+
+  CacheStatistics getStatistics() {
+
+    return statistics;
+  }
+
+  private static class CachedEntity<E> {
+
+    CachedEntity(final E entity, final long expireTime) {
+
+      this.entity = entity;
+      this.expireTime = expireTime;
+    }
+
+    private final E entity;
+
+    private final long expireTime;
+
+  }
+
+  private final Map<Object, CachedEntity<E>> entities = new LinkedHashMap<Object, CachedEntity<E>>(
+    16, 0.75f, true) {
+
+    private static final long serialVersionUID = -2873062335212380493L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Object, CachedEntity<E>> eldest) {
+
+      if (size() > maxSize) {
+        statistics.recordEviction();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private final CacheStatistics statistics = new CacheStatistics();
+
+  private final int maxSize;
+
+  private final long ttl;
+
+  private long generation;
+
+}
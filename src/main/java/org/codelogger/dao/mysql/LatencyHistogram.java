@@ -0,0 +1,124 @@
+package org.codelogger.dao.mysql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets like an HDR
+ * histogram: each power of two is split into 8 buckets, so percentiles are
+ * within 12.5% of the recorded values. Recording is lock-free and allocates
+ * nothing.
+ */
+class LatencyHistogram {
+
+  void record(final long nanos) {
+
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    totalNanos.add(value);
+    maxNanos.accumulate(value);
+  }
+
+  long getCount() {
+
+    return count.sum();
+  }
+
+  double getMeanMillis() {
+
+    long count = this.count.sum();
+    return count == 0 ? 0 : toMillis(totalNanos.sum() / count);
+  }
+
+  double getMaxMillis() {
+
+    return toMillis(maxNanos.get());
+  }
+
+  /**
+   * Returns the given percentile, 0 to 100, in milliseconds, or 0 if nothing
+   * is recorded.
+   */
+  double getPercentileMillis(final double percentile) {
+
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return toMillis(Math.min(upperBoundOf(i), maxNanos.get()));
+      }
+    }
+    return getMaxMillis();
+  }
+
+  static int bucketOf(final long value) {
+
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the largest value that falls into the given bucket.
+   */
+  static long upperBoundOf(final int bucket) {
+
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+    int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    long lowerBound = (SUB_BUCKETS + subBucket) * width;
+    return lowerBound + width - 1 < 0 ? Long.MAX_VALUE : lowerBound + width - 1;
+  }
+
+  private static double toMillis(final long nanos) {
+
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Values below this have a bucket each.
+   */
+  private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+  private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  private final LongAccumulator maxNanos = new LongAccumulator(new LongBinaryOperator() {
+
+    @Override
+    public long applyAsLong(final long left, final long right) {
+
+      return Math.max(left, right);
+    }
+  }, 0);
+
+}
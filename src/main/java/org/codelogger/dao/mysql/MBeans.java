@@ -0,0 +1,72 @@
+package org.codelogger.dao.mysql;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the metrics of daos and pools with the platform MBean server. A
+ * bean whose name is taken, by another pool with the same data source or a
+ * dao loaded by another class loader, is registered with an instance number
+ * added, so it never replaces the bean of another owner. Failures are logged
+ * rather than thrown.
+ */
+final class MBeans {
+
+  private MBeans() {
+
+  }
+
+  /**
+   * Registers the bean and returns the name it got, which is the given name
+   * with <code>,instance=N</code> added if the given name is taken.
+   */
+  static ObjectName register(final Object mbean, final String name) {
+
+    try {
+      ObjectName objectName = new ObjectName(name);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      for (int instance = 2;; instance++) {
+        try {
+          mbeanServer.registerMBean(mbean, objectName);
+          break;
+        } catch (InstanceAlreadyExistsException e) {
+          objectName = new ObjectName(name + ",instance=" + instance);
+        }
+      }
+      if (!objectName.getCanonicalName().equals(new ObjectName(name).getCanonicalName())) {
+        logger.warn("Mbean {} is already registered, register as {}.", name, objectName);
+      }
+      return objectName;
+    } catch (JMException e) {
+      logger.warn("Register mbean {} failed.", name, e);
+      return null;
+    }
+  }
+
+  static void unregister(final ObjectName objectName) {
+
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      logger.debug("Unregister mbean {} failed.", objectName, e);
+    }
+  }
+
+  static final String DOMAIN = "org.codelogger.dao";
+
+  private static final Logger logger = LoggerFactory.getLogger(MBeans.class);
+
+}
@@ -0,0 +1,11 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Executes one dao method. Invokers are bound to the methods of a dao when it
+ * is constructed, so a call is a single lookup of its invoker.
+ */
+interface MethodInvoker {
+
+  Object invoke(Object[] args);
+
+}
@@ -4,50 +4,81 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Maps.newLinkedHashMap;
 import static java.lang.String.format;
-import static org.codelogger.utils.ArrayUtils.isArray;
-import static org.codelogger.utils.CollectionUtils.isCollection;
 import static org.codelogger.utils.CollectionUtils.join;
 import static org.codelogger.utils.StringUtils.isBlank;
 
+import java.io.Closeable;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.codelogger.core.bean.Page;
 import org.codelogger.core.bean.Pageable;
+import org.codelogger.dao.AsyncMysqlDao;
 import org.codelogger.dao.MysqlDao;
+import org.codelogger.dao.bean.KeysetPage;
+import org.codelogger.dao.bean.KeysetPageable;
 import org.codelogger.dao.exception.DataAccessException;
 import org.codelogger.dao.exception.MethodUnsupportException;
 import org.codelogger.dao.exception.MysqlSqlException;
+import org.codelogger.dao.mysql.DerivedQuery.LikeMode;
+import org.codelogger.dao.mysql.QueryPlan.QueryType;
+import org.codelogger.dao.mysql.QueryPlan.ResultType;
+import org.codelogger.dao.stereotype.CacheResult;
 import org.codelogger.dao.stereotype.Column;
+import org.codelogger.dao.stereotype.CountStrategy;
 import org.codelogger.dao.stereotype.Entity;
+import org.codelogger.dao.stereotype.EntityCache;
+import org.codelogger.dao.stereotype.GenerationType;
 import org.codelogger.dao.stereotype.Id;
+import org.codelogger.dao.stereotype.PageCount;
 import org.codelogger.dao.stereotype.Param;
 import org.codelogger.dao.stereotype.Query;
+import org.codelogger.dao.stereotype.ReadFromPrimary;
 import org.codelogger.utils.ArrayUtils;
-import org.codelogger.utils.CollectionUtils;
 import org.codelogger.utils.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<E, I> {
 
   @SuppressWarnings("unchecked")
   public MysqlDaoInterpreter(final Properties settings, final Class<?> daoClass) {
 
-    dataSourcePool = new DataSourcePool(settings);
+    this.settings = settings;
+    dataSourceRouter = new DataSourceRouter(settings);
+    dataSourcePool = dataSourceRouter.getPrimary();
 
     Type genericInterface = daoClass.getGenericInterfaces()[0];
     String[] typeNames = genericInterface.toString().split(",");
@@ -57,6 +88,7 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
       Field[] declaredFields = entityClass.getDeclaredFields();
       List<String> columnNames = newArrayList();
       List<String> columnValuePlaceholders = newArrayList();
+      insertFields = newArrayList();
       List<String> columnUpdateNameValuePair = newArrayList();
       if (ArrayUtils.isNotEmpty(declaredFields)) {
         entityFields = newArrayList(declaredFields);
@@ -68,36 +100,63 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
           if (Modifier.isFinal(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
             || Modifier.isStatic(field.getModifiers())) {
             iterator.remove();
+            continue;
           }
           field.setAccessible(true);
           Id id = field.getAnnotation(Id.class);
-          String fieldName = field.getName();
           String columnName = getFieldColumnName(field);
           if (id != null) {
             idName = isBlank(id.name()) ? columnName : id.name();
             idField = field;
             columnName = idName;
           }
-          columnNames.add(columnName);
-          columnValuePlaceholders.add(":" + fieldName);
-          columnUpdateNameValuePair.add(columnName + " = :" + fieldName);
+          if (id == null || id.strategy() != GenerationType.IDENTITY) {
+            insertFields.add(field);
+            columnNames.add(columnName);
+            columnValuePlaceholders.add("?");
+          }
+          columnUpdateNameValuePair.add(columnName + " = ?");
         }
       }
-      insertSql = format("insert into %s (%s) values (%s)", tableName, join(columnNames, ","),
-        join(columnValuePlaceholders, ","));
-      updateSql = format("update %s set %s where %s = :%s", tableName,
-        join(columnUpdateNameValuePair, ","), idName, idField.getName());
+      insertSqlPrefix = format("insert into %s (%s) values ", tableName, join(columnNames, ","));
+      insertValuesSql = format("(%s)", join(columnValuePlaceholders, ","));
+      insertSql = insertSqlPrefix + insertValuesSql;
+      updateSql = format("update %s set %s where %s = ?", tableName,
+        join(columnUpdateNameValuePair, ","), idName);
       idClass = (Class<I>) Class.forName(typeNames[1].substring(0, typeNames[1].length() - 1)
         .trim());
+      findOneSql = format("select * from %s where %s = ?", tableName, idName);
+      findAllSql = format("select * from %s", tableName);
+      daoPageCount = daoClass.getAnnotation(PageCount.class);
+      findAllWindowCountSql = daoPageCount != null && daoPageCount.value() == CountStrategy.WINDOW
+        ? QueryPlan.toWindowCountSql(findAllSql) : null;
       countSql = format("select count(%s) from %s", idName, tableName);
-      deleteSql = format("delete from %s where %s = %%s", tableName, idName);
-      lockTableSql = format("lock table %s write", tableName);
-      unlockTableSql = "unlock tables";
-      Method[] declaredMethods = daoClass.getDeclaredMethods();
-      if (ArrayUtils.isNotEmpty(declaredMethods)) {
-        for (Method method : declaredMethods) {
-          System.out.println(method.getName());
-          methodNameToMethod.put(method.getName(), method);
+      deleteSql = format("delete from %s where %s = ?", tableName, idName);
+      List<String> fieldColumnNames = newArrayList();
+      for (Field field : entityFields) {
+        fieldColumnNames.add(field == idField ? idName : getFieldColumnName(field));
+      }
+      rowMapper = new EntityRowMapper<E>(entityClass, entityFields, fieldColumnNames);
+      idCache = newIdCache(settings);
+      resultCache = new ResultCache(Integer.valueOf(settings.getProperty(QUERY_CACHE_ROWS,
+        "10000")));
+      Id id = idField.getAnnotation(Id.class);
+      if (id.strategy() == GenerationType.HILO) {
+        idGenerator = new HiLoIdGenerator(dataSourcePool, id.sequenceTable(), tableName,
+          id.allocationSize(), tableName, idName);
+      }
+      daoName = daoClass.getSimpleName();
+      slowQueryLog = newSlowQueryLog(settings);
+      for (Method method : daoClass.getMethods()) {
+        MethodInvoker methodInvoker = newMethodInvoker(method);
+        if (methodInvoker != null && !isAsyncMethod(method)) {
+          methodInvoker = newMeteredInvoker(method, methodInvoker);
+        }
+        if (methodInvoker != null && method.isAnnotationPresent(ReadFromPrimary.class)) {
+          methodInvoker = readFromPrimary(methodInvoker);
+        }
+        if (methodInvoker != null) {
+          methodInvokers.put(method, methodInvoker);
         }
       }
     } catch (ClassNotFoundException e) {
@@ -108,77 +167,138 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
   @Override
   public E findOne(final I id) {
 
-    String sql = "select * from " + tableName + " where " + idName + " = " + coverToSqlValue(id);
-    return findOne(sql);
+    if (idCache == null || Transactions.isActive()) {
+      return findOne(findOneSql, id);
+    }
+    E cachedEntity = idCache.get(id);
+    if (cachedEntity != null) {
+      return rowMapper.copy(cachedEntity);
+    }
+    long generation = idCache.getGeneration();
+    E entity;
+    DataSourceRouter.beginPrimaryReads();
+    try {
+      entity = findOne(findOneSql, id);
+    } finally {
+      DataSourceRouter.endPrimaryReads();
+    }
+    if (entity != null) {
+      idCache.put(id, rowMapper.copy(entity), generation);
+    }
+    return entity;
+  }
+
+  /**
+   * Returns the hit and miss statistics of the {@link EntityCache} of this dao,
+   * null if the entities are not cached.
+   */
+  public CacheStatistics getEntityCacheStatistics() {
+
+    return idCache == null ? null : idCache.getStatistics();
   }
 
   @Override
   public List<E> findAll() {
 
-    String sql = "select * from " + tableName;
-    return findAll(sql);
+    return findAll(findAllSql);
   }
 
   @Override
   public Page<E> findAll(final Pageable pageable) {
 
-    String sql = "select * from " + tableName + buildLimitSql(pageable);
-    List<E> content = findAll(sql);
-    Long count = count();
-    return new Page<E>(pageable.page, pageable.pageSize, count, (int) (count / pageable.pageSize),
-      content);
+    return findPage(findAllSql, countSql, findAllWindowCountSql, new Object[0], pageable,
+      daoPageCount);
+  }
+
+  @Override
+  public KeysetPage<E> findAll(final KeysetPageable pageable) {
+
+    return findKeysetPage(findAllSql, " where ", new Object[0], pageable);
   }
 
   @Override
   public E save(final E entity) {
 
-    Object id = getFieldValue(idField, entity);
-    String sql;
-    Connection connection = dataSourcePool.getConnection();
-    try {
-      Statement statement = connection.createStatement();
-      if (id == null) {
-        sql = insertSql;
-        lockTable(statement);
-        ResultSet resultSet = statement.executeQuery(format(
-          "select %s from %s order by %s desc limit 1", idName, tableName, idName));
-        Long nextId = resultSet.next() ? resultSet.getLong(1) + 1 : 0;
-        sql = sql.replaceAll(":" + idField.getName(), coverToSqlValue(nextId));
-        for (Field field : entityFields) {
-          sql = sql
-            .replaceAll(":" + field.getName(), coverToSqlValue(getFieldValue(field, entity)));
-        }
-        statement.execute(sql);
-        unlockTable(statement);
-        setFieldValue(entity, idField, nextId);
-      } else {
-        sql = updateSql;
-        for (Field field : entityFields) {
-          sql = sql
-            .replaceAll(":" + field.getName(), coverToSqlValue(getFieldValue(field, entity)));
-        }
-        statement.execute(sql);
-      }
-      statement.close();
-    } catch (SQLException e) {
-      throw new MysqlSqlException(e);
+    if (getFieldValue(idField, entity) != null) {
+      executeUpdate(updateSql, getUpdateParameters(entity));
+    } else if (idGenerator != null) {
+      setFieldValue(entity, idField, toId(idGenerator.nextId()));
+      executeUpdate(insertSql, getInsertParameters(entity));
+    } else {
+      setFieldValue(entity, idField, toId(executeInsert(insertSql, getInsertParameters(entity))));
     }
-    dataSourcePool.freeConnection(connection);
+    onEntityWritten(getFieldValue(idField, entity));
     return entity;
   }
 
   @Override
-  public void delete(final I id) {
+  public List<E> saveAll(final Collection<E> entities) {
 
-    Connection connection = dataSourcePool.getConnection();
+    return saveAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  @Override
+  public List<E> saveAll(final Iterable<E> entities, final int batchSize) {
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive.");
+    }
+    int insertBatchSize = Math.min(batchSize, MAX_PLACEHOLDERS / Math.max(1, insertFields.size()));
+    List<E> savedEntities = newArrayList();
+    List<E> newEntities = new ArrayList<E>(insertBatchSize);
+    List<E> updatedEntities = new ArrayList<E>(batchSize);
+    Connection connection = acquireConnection(dataSourcePool);
     try {
-      Statement statement = connection.createStatement();
-      statement.execute(format(deleteSql, coverToSqlValue(id)));
-      statement.close();
+      boolean autoCommit = connection.getAutoCommit();
+      boolean committed = false;
+      if (autoCommit) {
+        connection.setAutoCommit(false);
+      }
+      try {
+        for (E entity : entities) {
+          if (getFieldValue(idField, entity) == null) {
+            newEntities.add(entity);
+            if (newEntities.size() == insertBatchSize) {
+              insertBatch(connection, newEntities);
+            }
+          } else {
+            updatedEntities.add(entity);
+            if (updatedEntities.size() == batchSize) {
+              updateBatch(connection, updatedEntities);
+            }
+          }
+          savedEntities.add(entity);
+        }
+        insertBatch(connection, newEntities);
+        updateBatch(connection, updatedEntities);
+        if (autoCommit) {
+          connection.commit();
+        }
+        committed = true;
+      } finally {
+        if (autoCommit) {
+          if (!committed) {
+            connection.rollback();
+          }
+          connection.setAutoCommit(true);
+        }
+      }
     } catch (SQLException e) {
       throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(dataSourcePool, connection);
     }
-    dataSourcePool.freeConnection(connection);
+    for (E savedEntity : savedEntities) {
+      onEntityWritten(getFieldValue(idField, savedEntity));
+    }
+    return savedEntities;
+  }
+
+  @Override
+  public void delete(final I id) {
+
+    executeUpdate(deleteSql, id);
+    onEntityWritten(id);
   }
 
   @Override
@@ -187,125 +307,770 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
     return count(countSql);
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Executes the given dao method with the invoker bound to it when this
+   * interpreter was constructed.
+   */
   public Object executeByMethod(final Method method, final Object... args) {
 
+    MethodInvoker methodInvoker = methodInvokers.get(method);
+    if (methodInvoker == null) {
+      throw new MethodUnsupportException(method.toString());
+    }
+    return methodInvoker.invoke(args);
+  }
+
+  /**
+   * Binds the given dao method to its invoker, returns null if the method is
+   * not supported.
+   */
+  @SuppressWarnings("unchecked")
+  private MethodInvoker newMethodInvoker(final Method method) {
+
+    if (method.getDeclaringClass() == AsyncMysqlDao.class) {
+      String methodName = method.getName();
+      try {
+        return newAsyncMethodInvoker(newMeteredInvoker(method, newMethodInvoker(MysqlDao.class
+          .getMethod(methodName.substring(0, methodName.length() - "Async".length()), method
+            .getParameterTypes()))));
+      } catch (NoSuchMethodException e) {
+        throw new MethodUnsupportException(method.toString(), e);
+      }
+    }
     if (method.equals(findOneMethod)) {
-      return findOne((I) args[0]);
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return findOne((I) args[0]);
+        }
+      };
     }
     if (method.equals(saveMethod)) {
-      return save((E) args[0]);
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return save((E) args[0]);
+        }
+      };
+    }
+    if (method.equals(saveAllMethod)) {
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return saveAll((Collection<E>) args[0]);
+        }
+      };
+    }
+    if (method.equals(batchSaveAllMethod)) {
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return saveAll((Iterable<E>) args[0], (Integer) args[1]);
+        }
+      };
     }
     if (method.equals(findAllMethod)) {
-      return findAll();
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return findAll();
+        }
+      };
     }
     if (method.equals(countMethod)) {
-      return count();
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return count();
+        }
+      };
     }
     if (method.equals(deleteMethod)) {
-      delete((I) args[0]);
-      return null;
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          delete((I) args[0]);
+          return null;
+        }
+      };
     }
     if (method.equals(pageableFindAllMethod)) {
-      return findAll((Pageable) args[0]);
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return findAll((Pageable) args[0]);
+        }
+      };
+    }
+    if (method.equals(keysetFindAllMethod)) {
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return findAll((KeysetPageable) args[0]);
+        }
+      };
+    }
+    if (method.getReturnType() == CompletableFuture.class) {
+      MethodInvoker methodInvoker = newQueryPlanInvoker(method);
+      return methodInvoker == null ? null : newAsyncMethodInvoker(newMeteredInvoker(method,
+        methodInvoker));
+    }
+    return newQueryPlanInvoker(method);
+  }
+
+  private boolean isAsyncMethod(final Method method) {
+
+    return method.getDeclaringClass() == AsyncMysqlDao.class
+      || method.getReturnType() == CompletableFuture.class;
+  }
+
+  /**
+   * Records the calls of the given dao method to its {@link DaoMethodMetrics},
+   * which is registered as an MBean by the primary pool and shared by the daos
+   * created again on it. Async methods are metered where they run.
+   */
+  private MethodInvoker newMeteredInvoker(final Method method, final MethodInvoker methodInvoker) {
+
+    StringBuilder methodNameBuilder = new StringBuilder(method.getName()).append('(');
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      methodNameBuilder.append(methodNameBuilder.charAt(methodNameBuilder.length() - 1) == '('
+        ? "" : ",").append(parameterType.getSimpleName());
+    }
+    String methodName = methodNameBuilder.append(')').toString();
+    final DaoMethodMetrics metrics = dataSourceRouter.getPrimary().getDaoMethodMetrics(daoName,
+      methodName);
+    methodMetrics.put(method, metrics);
+    return new MethodInvoker() {
+
+      @Override
+      public Object invoke(final Object[] args) {
+
+        CallTimer callTimer = CallTimer.start();
+        if (callTimer == null) {
+          return methodInvoker.invoke(args);
+        }
+        boolean failed = true;
+        try {
+          Object result = methodInvoker.invoke(args);
+          failed = false;
+          return result;
+        } finally {
+          callTimer.stop(metrics, failed);
+          if (slowQueryLog != null) {
+            slowQueryLog.record(callTimer, metrics.getName(), args);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates the slow query log if <code>database.slow.query.threshold</code>
+   * is set, in milliseconds. Each fingerprint is logged at most once per
+   * <code>database.slow.query.log.interval</code>, arguments are left out if
+   * <code>database.slow.query.redact.arguments</code> is true, and selects are
+   * explained on a spare connection if <code>database.slow.query.explain</code>
+   * is true.
+   */
+  private SlowQueryLog newSlowQueryLog(final Properties settings) {
+
+    long threshold = Long.valueOf(settings.getProperty(SLOW_QUERY_THRESHOLD, "0"));
+    if (threshold <= 0) {
+      return null;
+    }
+    SlowQueryLog.Explainer explainer = null;
+    if (Boolean.valueOf(settings.getProperty(SLOW_QUERY_EXPLAIN, "false"))) {
+      explainer = new SlowQueryLog.Explainer() {
+
+        @Override
+        public String explain(final String sql, final Object[] parameters) throws SQLException {
+
+          return MysqlDaoInterpreter.this.explain(sql, parameters);
+        }
+      };
+    }
+    return new SlowQueryLog(threshold, Long.valueOf(settings.getProperty(SLOW_QUERY_LOG_INTERVAL,
+      "60000")), Boolean.valueOf(settings.getProperty(SLOW_QUERY_REDACT_ARGUMENTS, "false")),
+      explainer);
+  }
+
+  /**
+   * Runs <code>EXPLAIN</code> of the statement on an idle connection of the
+   * read pool, returns null if no connection is idle. The explain bypasses the
+   * statement cache.
+   */
+  private String explain(final String sql, final Object[] parameters) throws SQLException {
+
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    if (readPool.getIdleConnections() == 0) {
+      return null;
+    }
+    Connection connection = readPool.getConnection();
+    try (PreparedStatement statement = connection.prepareStatement("explain " + sql,
+      ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      for (int i = 0; i < parameters.length; i++) {
+        setParameter(statement, i + 1, parameters[i]);
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return SlowQueryLog.formatPlan(resultSet);
+      }
+    } finally {
+      readPool.freeConnection(connection);
     }
+  }
+
+  /**
+   * Returns the statement fingerprints that ran slower than
+   * <code>database.slow.query.threshold</code> with the most total time first,
+   * empty if the slow query log is off.
+   */
+  public List<SlowQuery> getSlowQueries(final int limit) {
+
+    return slowQueryLog == null ? new ArrayList<SlowQuery>() : slowQueryLog.getTopQueries(limit);
+  }
+
+  /**
+   * Returns the metrics of the given dao method, null if it is not supported.
+   */
+  public DaoMethodMetricsMXBean getMethodMetrics(final Method method) {
+
+    return methodMetrics.get(method);
+  }
+
+  /**
+   * Runs the given invoker on the async executor, the returned future is
+   * completed with its result. The primary read override of the caller applies
+   * to the call.
+   */
+  private MethodInvoker newAsyncMethodInvoker(final MethodInvoker methodInvoker) {
+
+    return new MethodInvoker() {
+
+      @Override
+      public Object invoke(final Object[] args) {
+
+        final boolean primaryReads = DataSourceRouter.isReadingFromPrimary();
+        return CompletableFuture.supplyAsync(new Supplier<Object>() {
+
+          @Override
+          public Object get() {
+
+            if (!primaryReads) {
+              return methodInvoker.invoke(args);
+            }
+            DataSourceRouter.beginPrimaryReads();
+            try {
+              return methodInvoker.invoke(args);
+            } finally {
+              DataSourceRouter.endPrimaryReads();
+            }
+          }
+        }, getAsyncExecutor());
+      }
+    };
+  }
+
+  /**
+   * Returns the async executor of the primary pool, shared by all daos of the
+   * pool. The first dao creates it to run at most
+   * <code>database.async.threads</code> calls at a time, by default the number
+   * of connections of all pools, on virtual threads if
+   * <code>database.async.virtual.threads</code> is true.
+   */
+  private Executor getAsyncExecutor() {
+
+    int maxConcurrency = Integer.valueOf(settings.getProperty(ASYNC_THREADS,
+      String.valueOf(dataSourceRouter.getMaxConnections())));
+    return dataSourceRouter.getPrimary().getAsyncExecutor(maxConcurrency, Boolean.valueOf(settings
+      .getProperty(ASYNC_VIRTUAL_THREADS, "false")));
+  }
+
+  private MethodInvoker newQueryPlanInvoker(final Method method) {
+
+    final QueryPlan queryPlan = compileQueryPlan(method);
+    if (queryPlan == null) {
+      return null;
+    }
+    final CacheResult cacheResult = method.getAnnotation(CacheResult.class);
+    if (cacheResult != null) {
+      ResultType resultType = queryPlan.getResultType();
+      if (resultType != ResultType.ONE && resultType != ResultType.LIST
+        && resultType != ResultType.PAGE) {
+        throw new IllegalArgumentException(format("Results of %s can not be cached.", method));
+      }
+      return new MethodInvoker() {
+
+        @Override
+        public Object invoke(final Object[] args) {
+
+          return executeCachedQueryPlan(queryPlan, cacheResult.ttl(), args);
+        }
+      };
+    }
+    final Class<?> resultType = getResultType(method);
+    return new MethodInvoker() {
+
+      @Override
+      public Object invoke(final Object[] args) {
+
+        return toResultType(executeQueryPlan(queryPlan, args, queryPlan.getSql(args),
+          queryPlan.getParameters(args)), resultType);
+      }
+    };
+  }
+
+  private MethodInvoker readFromPrimary(final MethodInvoker methodInvoker) {
+
+    return new MethodInvoker() {
+
+      @Override
+      public Object invoke(final Object[] args) {
+
+        DataSourceRouter.beginPrimaryReads();
+        try {
+          return methodInvoker.invoke(args);
+        } finally {
+          DataSourceRouter.endPrimaryReads();
+        }
+      }
+    };
+  }
+
+  /**
+   * Executes a select plan through the result cache. Page results are cached
+   * per page, with their totals.
+   */
+  private Object executeCachedQueryPlan(final QueryPlan queryPlan, final long ttl,
+    final Object[] args) {
+
+    String sql = queryPlan.getSql(args);
+    Object[] parameters = queryPlan.getParameters(args);
+    if (Transactions.isActive()) {
+      return executeQueryPlan(queryPlan, args, sql, parameters);
+    }
+    String cacheSql = sql;
+    Object[] cacheParameters = parameters;
+    if (queryPlan.getResultType() == ResultType.PAGE) {
+      Pageable pageable = (Pageable) args[queryPlan.getPageableIndex()];
+      cacheSql = sql + buildLimitSql(pageable);
+      cacheParameters = concat(parameters, buildLimitParameters(pageable));
+    }
+    Object cachedResult = resultCache.get(cacheSql, cacheParameters);
+    if (cachedResult != ResultCache.MISS) {
+      return copyResult(cachedResult);
+    }
+    long generation = resultCache.getGeneration();
+    Object result;
+    DataSourceRouter.beginPrimaryReads();
+    try {
+      result = executeQueryPlan(queryPlan, args, sql, parameters);
+    } finally {
+      DataSourceRouter.endPrimaryReads();
+    }
+    resultCache.put(cacheSql, cacheParameters, copyResult(result), countRows(result), ttl,
+      generation);
+    return result;
+  }
+
+  /**
+   * Copies the entities of a cacheable result, so cached results are never
+   * shared with callers.
+   */
+  @SuppressWarnings("unchecked")
+  private Object copyResult(final Object result) {
+
+    if (result instanceof List) {
+      List<E> entities = (List<E>) result;
+      List<E> copies = new ArrayList<E>(entities.size());
+      for (E entity : entities) {
+        copies.add(rowMapper.copy(entity));
+      }
+      return copies;
+    }
+    if (result instanceof Page) {
+      Page<E> page = (Page<E>) result;
+      return new Page<E>(page.getPage(), page.getPageSize(), page.getCount(),
+        page.getTotalPages(), (List<E>) copyResult(page.getContent()));
+    }
+    return result == null ? null : rowMapper.copy((E) result);
+  }
+
+  private int countRows(final Object result) {
+
+    if (result instanceof List) {
+      return ((List<?>) result).size();
+    }
+    if (result instanceof Page) {
+      return ((Page<?>) result).getContent().size();
+    }
+    return 1;
+  }
+
+  /**
+   * Returns the hit and miss statistics of the {@link CacheResult} methods of
+   * this dao.
+   */
+  public CacheStatistics getResultCacheStatistics() {
+
+    return resultCache.getStatistics();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object executeQueryPlan(final QueryPlan queryPlan, final Object[] args,
+    final String sql, final Object[] parameters) {
+
+    switch (queryPlan.getResultType()) {
+    case LIST:
+      return findAll(sql, parameters);
+    case PAGE:
+      return findPage(sql, queryPlan.getCountSql(args), queryPlan.getWindowCountSql(args),
+        parameters, (Pageable) args[queryPlan.getPageableIndex()], queryPlan.getPageCount());
+    case KEYSET_PAGE:
+      return findKeysetPage(sql, " and ", parameters,
+        (KeysetPageable) args[queryPlan.getPageableIndex()]);
+    case STREAM:
+      return stream(sql, parameters);
+    case ITERATOR:
+      return iterate(sql, parameters);
+    case CONSUMER:
+      forEach((Consumer<? super E>) args[args.length - 1], sql, parameters);
+      return null;
+    case ONE:
+      return findOne(sql, parameters);
+    case EXISTS:
+      return exists(sql, parameters);
+    case COUNT:
+      return count(sql, parameters);
+    default:
+      int updatedRows = executeUpdate(sql, parameters);
+      onTableWritten();
+      return updatedRows;
+    }
+  }
+
+  /**
+   * Converts the row count of a count or a write to the int or long the method
+   * returns, the row count of a write is dropped if the method returns neither.
+   */
+  private Object toResultType(final Object result, final Class<?> resultType) {
+
+    if (!(result instanceof Number)) {
+      return result;
+    } else if (resultType == int.class || resultType == Integer.class) {
+      return ((Number) result).intValue();
+    } else if (resultType == long.class || resultType == Long.class) {
+      return ((Number) result).longValue();
+    }
+    return null;
+  }
+
+  /**
+   * Compiles the given dao method into a {@link QueryPlan}, returns null if the
+   * method is neither annotated by {@link Query} nor a derived query method.
+   */
+  private QueryPlan compileQueryPlan(final Method method) {
 
     Query query = method.getAnnotation(Query.class);
     if (query == null) {
-      if (method.getName().startsWith("findBy")) {
-        StringBuilder sqlBuilder = new StringBuilder("select * from " + tableName + " where ");
-        String conditions = method.getName().replaceFirst("findBy", "");
-        String[] fieldNames = conditions.split("And");
-        for (int i = 0; i < fieldNames.length; i++) {
-          Field field = fieldNameToField.get(fieldNames[i]);
-          sqlBuilder.append(getFieldColumnName(field)).append("=");
-          sqlBuilder.append(coverToSqlValue(args[i]));
-        }
-        String sql = sqlBuilder.toString();
-        if (Collection.class.isAssignableFrom(method.getReturnType())) {
-          return findAll(sql);
-        } else if (Page.class.isAssignableFrom(method.getReturnType())) {
-          Object lastArgument = ArrayUtils.getLastElement(args);
-          Pageable pageable = null;
-          Long count;
-          if (lastArgument instanceof Pageable) {
-            count = count(sql.replace("select *", "select count(*)"));
-            pageable = (Pageable) lastArgument;
-            sql += buildLimitSql(pageable);
-          } else {
-            throw new IllegalArgumentException("Pageable is not the latest argument.");
-          }
-          List<E> content = findAll(sql);
-          return new Page<E>(pageable.page, pageable.pageSize, count,
-            (int) (count / pageable.pageSize), content);
-        } else {
-          return findOne(sql);
+      return DerivedQuery.isDerived(method.getName()) ? compileDerivedQueryPlan(method) : null;
+    }
+    return compileAnnotatedQueryPlan(method, query);
+  }
+
+  /**
+   * Compiles a derived method like <code>findTop10ByAgeBetweenOrderByAgeDesc</code>
+   * so its predicates, order and limit run in MySQL, see {@link DerivedQuery}.
+   * Exists, count and delete methods return a primitive without mapping any
+   * row to an entity.
+   */
+  private QueryPlan compileDerivedQueryPlan(final Method method) {
+
+    Map<String, String> propertyToColumn = newHashMap();
+    for (Field field : entityFields) {
+      propertyToColumn.put(StringUtils.firstCharToUpperCase(field.getName()), getColumnName(field));
+    }
+    DerivedQuery derivedQuery = new DerivedQuery(method.getName(), propertyToColumn);
+    if (derivedQuery.getArgumentCount() > method.getParameterTypes().length) {
+      throw new IllegalArgumentException(format("%s takes %s arguments but its name binds %s.",
+        method, method.getParameterTypes().length, derivedQuery.getArgumentCount()));
+    }
+    String fromSql = " from " + tableName + derivedQuery.getWhereSql();
+    int[] argumentIndexes = derivedQuery.getArgumentIndexes();
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    LikeMode[] likeModes = derivedQuery.getLikeModes();
+    Class<?> resultType = getResultType(method);
+    switch (derivedQuery.getSubject()) {
+    case EXISTS:
+      checkResultType(method, resultType, boolean.class, Boolean.class);
+      return new QueryPlan(QueryType.SELECT, ResultType.EXISTS, "select 1" + fromSql
+        + " limit 1", null, argumentIndexes, parameterTypes, -1, null, likeModes);
+    case COUNT:
+      checkResultType(method, resultType, long.class, Long.class, int.class, Integer.class);
+      return new QueryPlan(QueryType.SELECT, ResultType.COUNT, "select count(*)" + fromSql, null,
+        argumentIndexes, parameterTypes, -1, null, likeModes);
+    case DELETE:
+      checkResultType(method, resultType, void.class, Void.class, int.class, Integer.class,
+        long.class, Long.class);
+      return new QueryPlan(QueryType.DELETE, ResultType.NONE, "delete" + fromSql, null,
+        argumentIndexes, parameterTypes, -1, null, likeModes);
+    default:
+      if (Page.class.isAssignableFrom(resultType)
+        || KeysetPage.class.isAssignableFrom(resultType)) {
+        if (derivedQuery.getLimit() > 0 || !derivedQuery.getOrderBySql().isEmpty()) {
+          throw new IllegalArgumentException(format(
+            "%s can not limit or order a page, use the pageable instead.", method));
         }
       }
-      throw new MethodUnsupportException(method.toString());
+      return newSelectQueryPlan(method, "select *" + fromSql + derivedQuery.getOrderBySql()
+        + derivedQuery.getLimitSql(), "select count(*)" + fromSql, argumentIndexes, likeModes);
+    }
+  }
+
+  private void checkResultType(final Method method, final Class<?> resultType,
+    final Class<?>... allowedTypes) {
+
+    if (!Arrays.asList(allowedTypes).contains(resultType)) {
+      throw new IllegalArgumentException(format("%s must return one of %s.", method,
+        Arrays.toString(allowedTypes)));
+    }
+  }
+
+  private QueryPlan compileAnnotatedQueryPlan(final Method method, final Query query) {
+
+    Map<String, Integer> paramNameToArgumentIndex = newHashMap();
+    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    for (int i = 0; i < parameterAnnotations.length; i++) {
+      for (Annotation annotation : parameterAnnotations[i]) {
+        if (annotation instanceof Param) {
+          paramNameToArgumentIndex.put(((Param) annotation).value(), i);
+          break;
+        }
+      }
+    }
+    String querySql = query.value().trim();
+    querySql = querySql.replaceFirst(Pattern.quote(entityClass.getName()), tableName);
+    querySql = querySql.replaceFirst(Pattern.quote(entityClass.getSimpleName()), tableName);
+    List<Integer> argumentIndexes = newArrayList();
+    querySql = replaceNamedParameters(method, querySql, paramNameToArgumentIndex, argumentIndexes);
+    int[] indexes = new int[argumentIndexes.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = argumentIndexes.get(i);
+    }
+    if (isSelectQuery(querySql)) {
+      querySql = simpleSelectQueryPattern.matcher(querySql).matches() ? "select * " + querySql
+        : querySql;
+      String countQuerySql = selectAllPattern.matcher(querySql).lookingAt() ? querySql
+        .replaceFirst("^(?i)select\\s+\\*", "select count(*)") : "select count(*) from ("
+        + querySql + ") dao_count";
+      return newSelectQueryPlan(method, querySql, countQuerySql, indexes, null);
+    } else if (updateQueryPattern.matcher(querySql).matches()) {
+      return new QueryPlan(QueryType.UPDATE, ResultType.NONE, querySql, null, indexes,
+        method.getParameterTypes(), -1, null);
+    } else if (deleteQueryPattern.matcher(querySql).matches()) {
+      return new QueryPlan(QueryType.DELETE, ResultType.NONE, querySql, null, indexes,
+        method.getParameterTypes(), -1, null);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the {@link PageCount} of a page method, falling back to the one of
+   * the dao interface. An approximate count of the dao interface only applies
+   * to the unfiltered <code>findAll(Pageable)</code>.
+   */
+  private PageCount resolvePageCount(final Method method) {
+
+    PageCount pageCount = method.getAnnotation(PageCount.class);
+    if (pageCount != null) {
+      if (pageCount.value() == CountStrategy.APPROXIMATE) {
+        throw new IllegalArgumentException(format(
+          "Approximate count only applies to findAll(Pageable), not %s.", method));
+      }
+      return pageCount;
+    }
+    return daoPageCount == null || daoPageCount.value() == CountStrategy.APPROXIMATE ? null
+      : daoPageCount;
+  }
+
+  private QueryPlan newSelectQueryPlan(final Method method, final String sql,
+    final String countSql, final int[] argumentIndexes, final LikeMode[] likeModes) {
+
+    Class<?> returnType = getResultType(method);
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    if (method.getReturnType() == CompletableFuture.class
+      && (Stream.class.isAssignableFrom(returnType) || Iterator.class.isAssignableFrom(returnType)
+      || returnType == Void.class)) {
+      throw new IllegalArgumentException(format(
+        "%s can not stream its results asynchronously.", method));
+    }
+    if (Collection.class.isAssignableFrom(returnType)) {
+      return new QueryPlan(QueryType.SELECT, ResultType.LIST, sql, null, argumentIndexes,
+        parameterTypes, -1, null, likeModes);
+    } else if (Stream.class.isAssignableFrom(returnType)) {
+      return new QueryPlan(QueryType.SELECT, ResultType.STREAM, sql, null, argumentIndexes,
+        parameterTypes, -1, null, likeModes);
+    } else if (Iterator.class.isAssignableFrom(returnType)) {
+      if (!returnType.isAssignableFrom(ResultIterator.class)
+        || !Closeable.class.isAssignableFrom(returnType)) {
+        throw new IllegalArgumentException(format(
+          "%s must return ResultIterator, a plain Iterator can not be closed.", method));
+      }
+      return new QueryPlan(QueryType.SELECT, ResultType.ITERATOR, sql, null, argumentIndexes,
+        parameterTypes, -1, null, likeModes);
+    } else if (returnType == void.class && parameterTypes.length > 0
+      && Consumer.class.isAssignableFrom(parameterTypes[parameterTypes.length - 1])) {
+      return new QueryPlan(QueryType.SELECT, ResultType.CONSUMER, sql, null, argumentIndexes,
+        parameterTypes, -1, null, likeModes);
+    } else if (KeysetPage.class.isAssignableFrom(returnType)) {
+      int pageableIndex = parameterTypes.length - 1;
+      if (pageableIndex < 0
+        || !KeysetPageable.class.isAssignableFrom(parameterTypes[pageableIndex])) {
+        throw new IllegalArgumentException("KeysetPageable is not the latest argument.");
+      }
+      return new QueryPlan(QueryType.SELECT, ResultType.KEYSET_PAGE, toSeekableSql(method, sql),
+        null, argumentIndexes, parameterTypes, pageableIndex, null, likeModes);
+    } else if (Page.class.isAssignableFrom(returnType)) {
+      int pageableIndex = parameterTypes.length - 1;
+      if (pageableIndex < 0 || !Pageable.class.isAssignableFrom(parameterTypes[pageableIndex])) {
+        throw new IllegalArgumentException("Pageable is not the latest argument.");
+      }
+      return new QueryPlan(QueryType.SELECT, ResultType.PAGE, sql, countSql, argumentIndexes,
+        parameterTypes, pageableIndex, resolvePageCount(method), likeModes);
     } else {
-      String querySql = query.value().trim();
-      Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-      for (int i = 0; i < parameterAnnotations.length; i++) {
-        Annotation[] annotations = parameterAnnotations[i];
-        Param param = null;
-        for (Annotation annotation : annotations) {
-          if (annotation instanceof Param) {
-            param = (Param) annotation;
-            break;
-          }
+      return new QueryPlan(QueryType.SELECT, ResultType.ONE, sql, null, argumentIndexes,
+        parameterTypes, -1, null, likeModes);
+    }
+  }
+
+  /**
+   * Returns the return type of the method, or the result type of the future it
+   * returns.
+   */
+  private Class<?> getResultType(final Method method) {
+
+    if (method.getReturnType() != CompletableFuture.class) {
+      return method.getReturnType();
+    }
+    Type returnType = method.getGenericReturnType();
+    if (returnType instanceof ParameterizedType) {
+      Type resultType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+      if (resultType instanceof ParameterizedType) {
+        resultType = ((ParameterizedType) resultType).getRawType();
+      }
+      if (resultType instanceof Class) {
+        return (Class<?>) resultType;
+      }
+    }
+    return Object.class;
+  }
+
+  /**
+   * Rewrites <code>select ... where condition</code> to
+   * <code>select ... where (condition)</code>, or appends
+   * <code>where 1 = 1</code> to a select without condition, so a seek
+   * predicate can be appended with <code>and</code>.
+   */
+  private String toSeekableSql(final Method method, final String sql) {
+
+    if (unseekableQueryPattern.matcher(sql).matches()) {
+      throw new IllegalArgumentException(format(
+        "Keyset paging of %s does not support group by, order by or limit.", method));
+    }
+    Matcher whereMatcher = wherePattern.matcher(sql);
+    if (whereMatcher.find()) {
+      return sql.substring(0, whereMatcher.end()) + "(" + sql.substring(whereMatcher.end()) + ")";
+    }
+    return sql + " where 1 = 1";
+  }
+
+  /**
+   * Replaces every <code>:name</code> parameter outside quoted literals by a
+   * <code>?</code> placeholder and collects the argument index bound to it.
+   */
+  private String replaceNamedParameters(final Method method, final String querySql,
+    final Map<String, Integer> paramNameToArgumentIndex, final List<Integer> argumentIndexes) {
+
+    StringBuilder sqlBuilder = new StringBuilder(querySql.length());
+    char quote = 0;
+    for (int i = 0; i < querySql.length(); i++) {
+      char c = querySql.charAt(i);
+      if (quote != 0) {
+        quote = c == quote ? 0 : quote;
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == ':' && i + 1 < querySql.length()
+        && Character.isJavaIdentifierStart(querySql.charAt(i + 1))) {
+        int end = i + 1;
+        while (end < querySql.length() && Character.isJavaIdentifierPart(querySql.charAt(end))) {
+          end++;
         }
-        querySql = querySql.replaceFirst(":" + param.value(), coverToSqlValue(args[i]));
-      }
-      querySql = querySql.replaceFirst(entityClass.getName(), tableName);
-      querySql = querySql.replaceFirst(
-        ArrayUtils.getLastElement(entityClass.getName().split("\\.")), tableName);
-      if (isSelectQuery(querySql)) {
-        querySql = simpleSelectQueryPattern.matcher(querySql).matches() ? "select * " + querySql
-          : querySql;
-        if (Collection.class.isAssignableFrom(method.getReturnType())) {
-          return findAll(querySql);
-        } else if (Page.class.isAssignableFrom(method.getReturnType())) {
-          Object lastArgument = ArrayUtils.getLastElement(args);
-          Pageable pageable = null;
-          Long count;
-          if (lastArgument instanceof Pageable) {
-            count = count(querySql.replace("select *", "select count(*)"));
-            pageable = (Pageable) lastArgument;
-            querySql += buildLimitSql(pageable);
-          } else {
-            throw new IllegalArgumentException("Pageable is not the latest argument.");
-          }
-          List<E> content = findAll(querySql);
-          return new Page<E>(pageable.page, pageable.pageSize, count,
-            (int) (count / pageable.pageSize), content);
-        } else {
-          return findOne(querySql);
+        String paramName = querySql.substring(i + 1, end);
+        Integer argumentIndex = paramNameToArgumentIndex.get(paramName);
+        if (argumentIndex == null) {
+          throw new IllegalArgumentException(format("No @Param(\"%s\") argument found for %s.",
+            paramName, method));
         }
-      } else if (updateQueryPattern.matcher(querySql).matches()
-        || deleteQueryPattern.matcher(querySql).matches()) {
-        executeQuery(querySql);
-        return null;
+        argumentIndexes.add(argumentIndex);
+        sqlBuilder.append('?');
+        i = end - 1;
+        continue;
       }
-      throw new MethodUnsupportException(method.toString());
+      sqlBuilder.append(c);
     }
+    return sqlBuilder.toString();
   }
 
-  private Long count(final String countSql) {
+  private Long count(final String countSql, final Object... parameters) {
 
     Long count = 0L;
-    Connection connection = dataSourcePool.getConnection();
-    try {
-      Statement statement = connection.createStatement();
-      ResultSet resultSet = statement.executeQuery(countSql);
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    try (PreparedStatement statement = prepareStatement(connection, countSql, parameters);
+      ResultSet resultSet = CallTimer.executeQuery(statement, countSql, parameters)) {
       count = resultSet.next() ? resultSet.getLong(1) : 0;
     } catch (SQLException e) {
       throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(readPool, connection);
     }
-    dataSourcePool.freeConnection(connection);
     return count;
   }
 
+  /**
+   * Returns true if the select returns a row, only the first row is fetched.
+   */
+  private boolean exists(final String sql, final Object... parameters) {
+
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    try (PreparedStatement statement = prepareStatement(connection, sql, parameters);
+      ResultSet resultSet = CallTimer.executeQuery(statement, sql, parameters)) {
+      return resultSet.next();
+    } catch (SQLException e) {
+      throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(readPool, connection);
+    }
+  }
+
   private Boolean isSelectQuery(final String querySql) {
 
     for (Pattern pattern : selectQueryPatterns) {
@@ -316,80 +1081,550 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
     return false;
   }
 
-  private void executeQuery(final String query) {
+  /**
+   * Drops the cached page counts, results and entities after the table of
+   * this dao is written by a query. In a transaction they are dropped again
+   * when it completes, since other threads may cache rows in between.
+   */
+  private void onTableWritten() {
+
+    countCache.clear();
+    resultCache.clear();
+    if (idCache != null) {
+      idCache.clear();
+    }
+    if (Transactions.isActive()) {
+      Transactions.afterCompletion(this, new Runnable() {
 
-    Connection connection = dataSourcePool.getConnection();
+        @Override
+        public void run() {
+
+          onTableWritten();
+        }
+      });
+    }
+  }
+
+  /**
+   * Drops the cached page counts and results, and the cached entity after
+   * the entity with the given id is written.
+   */
+  private void onEntityWritten(final Object id) {
+
+    if (Transactions.isActive()) {
+      onTableWritten();
+      return;
+    }
+    countCache.clear();
+    resultCache.clear();
+    if (idCache != null) {
+      idCache.remove(id);
+    }
+  }
+
+  /**
+   * Creates the id cache from the {@link EntityCache} of the entity, the
+   * <code>database.entity.cache.{table}.size</code> and <code>.ttl</code>
+   * settings override it. Returns null if the entities are not cached.
+   */
+  private IdCache<E> newIdCache(final Properties settings) {
+
+    EntityCache entityCache = entityClass.getAnnotation(EntityCache.class);
+    String settingPrefix = ENTITY_CACHE_PROPERTY_PREFIX + tableName;
+    int maxSize = Integer.valueOf(settings.getProperty(settingPrefix + ".size",
+      String.valueOf(entityCache == null ? 0 : entityCache.maxSize())));
+    long ttl = Long.valueOf(settings.getProperty(settingPrefix + ".ttl",
+      String.valueOf(entityCache == null ? 600000 : entityCache.ttl())));
+    return maxSize > 0 && ttl > 0 ? new IdCache<E>(maxSize, ttl) : null;
+  }
+
+  /**
+   * Returns the connection of the current transaction to the database of the
+   * pool, or borrows one from the pool if there is no transaction.
+   */
+  private Connection acquireConnection(final DataSourcePool pool) {
+
+    long startTime = System.nanoTime();
     try {
-      Statement statement = connection.createStatement();
-      System.out.println(query);
-      statement.execute(query);
+      Connection connection = Transactions.getConnection(pool);
+      return connection == null ? pool.getConnection() : connection;
+    } finally {
+      CallTimer.recordPoolWait(startTime);
+    }
+  }
+
+  /**
+   * Returns the connection to the pool unless it belongs to the current
+   * transaction.
+   */
+  private void releaseConnection(final DataSourcePool pool, final Connection connection) {
+
+    if (!Transactions.isBound(connection)) {
+      pool.freeConnection(connection);
+    }
+  }
+
+  private int executeUpdate(final String sql, final Object... parameters) {
+
+    int updatedRows;
+    Connection connection = acquireConnection(dataSourcePool);
+    try (PreparedStatement statement = prepareStatement(connection, sql, parameters)) {
+      updatedRows = CallTimer.executeUpdate(statement, sql, parameters);
     } catch (SQLException e) {
       throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(dataSourcePool, connection);
     }
-    dataSourcePool.freeConnection(connection);
+    return updatedRows;
   }
 
-  private List<E> findAll(final String sql) {
+  /**
+   * Executes the insert and returns the id generated by the database.
+   */
+  private long executeInsert(final String sql, final Object... parameters) {
+
+    long generatedId;
+    Connection connection = acquireConnection(dataSourcePool);
+    try (PreparedStatement statement = connection.prepareStatement(sql,
+      Statement.RETURN_GENERATED_KEYS)) {
+      for (int i = 0; i < parameters.length; i++) {
+        setParameter(statement, i + 1, parameters[i]);
+      }
+      CallTimer.executeUpdate(statement, sql, parameters);
+      try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+        if (!generatedKeys.next()) {
+          throw new MysqlSqlException(format(
+            "No id is generated by %s, is %s.%s AUTO_INCREMENT?", sql, tableName, idName));
+        }
+        generatedId = generatedKeys.getLong(1);
+      }
+    } catch (SQLException e) {
+      throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(dataSourcePool, connection);
+    }
+    return generatedId;
+  }
 
-    List<E> elements = newArrayList();
-    Connection connection = dataSourcePool.getConnection();
-    try {
-      Statement statement = connection.createStatement();
-      System.out.println(sql);
-      ResultSet resultSet = statement.executeQuery(sql);
-      try {
-        while (resultSet.next()) {
-          E element = entityClass.newInstance();
-          for (Field field : entityFields) {
-            if (Modifier.isFinal(field.getModifiers())) {
-              continue;
-            }
-            Object value = getDataFromResultSetByField(resultSet, field);
-            if (value != null) {
-              field.set(element, value);
+  /**
+   * Inserts the given entities with one multi-row insert and clears the list.
+   */
+  private void insertBatch(final Connection connection, final List<E> entities)
+    throws SQLException {
+
+    if (entities.isEmpty()) {
+      return;
+    }
+    StringBuilder sqlBuilder = new StringBuilder(insertSqlPrefix.length() + entities.size()
+      * (insertValuesSql.length() + 1));
+    sqlBuilder.append(insertSqlPrefix);
+    for (int i = 0; i < entities.size(); i++) {
+      sqlBuilder.append(i == 0 ? "" : ",").append(insertValuesSql);
+    }
+    if (idGenerator != null) {
+      for (E entity : entities) {
+        setFieldValue(entity, idField, toId(idGenerator.nextId()));
+      }
+    }
+    String sql = sqlBuilder.toString();
+    try (PreparedStatement statement = connection.prepareStatement(sql,
+      idGenerator == null ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
+      int parameterIndex = 1;
+      for (E entity : entities) {
+        for (Field field : insertFields) {
+          setParameter(statement, parameterIndex++, getFieldValue(field, entity));
+        }
+      }
+      CallTimer.executeUpdate(statement, sql, null);
+      if (idGenerator == null) {
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+          for (E entity : entities) {
+            if (!generatedKeys.next()) {
+              throw new MysqlSqlException(format(
+                "Missing generated ids of %s, is %s.%s AUTO_INCREMENT?", tableName, tableName,
+                idName));
             }
+            setFieldValue(entity, idField, toId(generatedKeys.getLong(1)));
           }
-          elements.add(element);
         }
-        resultSet.close();
-      } catch (Exception e) {
-        throw new DataAccessException(e);
       }
-      statement.close();
+    }
+    entities.clear();
+  }
+
+  /**
+   * Updates the given entities with one jdbc batch and clears the list.
+   */
+  private void updateBatch(final Connection connection, final List<E> entities)
+    throws SQLException {
+
+    if (entities.isEmpty()) {
+      return;
+    }
+    try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+      for (E entity : entities) {
+        Object[] parameters = getUpdateParameters(entity);
+        for (int i = 0; i < parameters.length; i++) {
+          setParameter(statement, i + 1, parameters[i]);
+        }
+        statement.addBatch();
+      }
+      CallTimer.executeBatch(statement, updateSql);
+    }
+    entities.clear();
+  }
+
+  private List<E> findAll(final String sql, final Object... parameters) {
+
+    List<E> elements = newArrayList();
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    try (PreparedStatement statement = prepareStatement(connection, sql, parameters);
+      ResultSet resultSet = CallTimer.executeQuery(statement, sql, parameters)) {
+      long mappingStartTime = CallTimer.startMapping();
+      int[] columnIndexes = rowMapper.getColumnIndexes(resultSet);
+      while (resultSet.next()) {
+        elements.add(rowMapper.mapRow(resultSet, columnIndexes));
+      }
+      CallTimer.recordMapping(mappingStartTime, elements.size(), entityClass);
     } catch (SQLException e) {
       throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(readPool, connection);
     }
-    dataSourcePool.freeConnection(connection);
     return elements;
   }
 
-  private E findOne(final String sql) {
+  /**
+   * Executes the query with mysql's row by row streaming, rows are mapped when
+   * they are read from the returned iterator.
+   */
+  private ResultIterator<E> iterate(final String sql, final Object... parameters) {
+
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    PreparedStatement statement = null;
+    boolean iterating = false;
+    try {
+      statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY);
+      statement.setFetchSize(Integer.MIN_VALUE);
+      for (int i = 0; i < parameters.length; i++) {
+        setParameter(statement, i + 1, parameters[i]);
+      }
+      ResultIterator<E> iterator = new ResultIterator<E>(connection, !Transactions
+        .isBound(connection), statement, CallTimer.executeQuery(statement, sql, parameters),
+        rowMapper);
+      iterating = true;
+      return iterator;
+    } catch (SQLException e) {
+      throw new MysqlSqlException(e);
+    } finally {
+      if (!iterating) {
+        closeQuietly(statement);
+        releaseConnection(readPool, connection);
+      }
+    }
+  }
+
+  /**
+   * Streams the query like {@link #iterate(String, Object...)}, closing the
+   * stream releases the connection.
+   */
+  private Stream<E> stream(final String sql, final Object... parameters) {
+
+    final ResultIterator<E> iterator = iterate(sql, parameters);
+    return StreamSupport.stream(
+      Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+      false).onClose(new Runnable() {
+
+      @Override
+      public void run() {
+
+        iterator.close();
+      }
+    });
+  }
+
+  private void forEach(final Consumer<? super E> consumer, final String sql,
+    final Object... parameters) {
+
+    ResultIterator<E> iterator = iterate(sql, parameters);
+    try {
+      while (iterator.hasNext()) {
+        consumer.accept(iterator.next());
+      }
+    } finally {
+      iterator.close();
+    }
+  }
+
+  private E findOne(final String sql, final Object... parameters) {
 
     E result = null;
-    Connection connection = dataSourcePool.getConnection();
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    try (PreparedStatement statement = prepareStatement(connection, sql, parameters);
+      ResultSet resultSet = CallTimer.executeQuery(statement, sql, parameters)) {
+      long mappingStartTime = CallTimer.startMapping();
+      if (resultSet.next()) {
+        result = rowMapper.mapRow(resultSet, rowMapper.getColumnIndexes(resultSet));
+      }
+      CallTimer.recordMapping(mappingStartTime, result == null ? 0 : 1, entityClass);
+    } catch (SQLException e) {
+      throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(readPool, connection);
+    }
+    return result;
+  }
+
+  private PreparedStatement prepareStatement(final Connection connection, final String sql,
+    final Object... parameters) throws SQLException {
+
+    PreparedStatement statement = connection.prepareStatement(sql);
     try {
-      Statement statement = connection.createStatement();
-      ResultSet resultSet = statement.executeQuery(sql);
-      try {
-        while (resultSet.next()) {
-          result = entityClass.newInstance();
-          for (Field field : entityFields) {
-            Object value = getDataFromResultSetByField(resultSet, field);
-            if (value != null) {
-              field.set(result, value);
-            }
+      for (int i = 0; i < parameters.length; i++) {
+        setParameter(statement, i + 1, parameters[i]);
+      }
+    } catch (SQLException e) {
+      closeQuietly(statement);
+      throw e;
+    } catch (RuntimeException e) {
+      closeQuietly(statement);
+      throw e;
+    }
+    return statement;
+  }
+
+  private void closeQuietly(final Statement statement) {
+
+    if (statement == null) {
+      return;
+    }
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      logger.debug("Close statement failed.", e);
+    }
+  }
+
+  private void setParameter(final PreparedStatement statement, final int parameterIndex,
+    final Object value) throws SQLException {
+
+    if (value == null) {
+      statement.setNull(parameterIndex, Types.NULL);
+    } else if (value instanceof Long) {
+      statement.setLong(parameterIndex, (Long) value);
+    } else if (value instanceof Integer) {
+      statement.setInt(parameterIndex, (Integer) value);
+    } else if (value instanceof String) {
+      statement.setString(parameterIndex, (String) value);
+    } else if (value instanceof Enum || value instanceof Character) {
+      statement.setString(parameterIndex, value.toString());
+    } else {
+      statement.setObject(parameterIndex, value);
+    }
+  }
+
+  /**
+   * Fetches the content and the total of a page with the given count strategy.
+   */
+  private Page<E> findPage(final String sql, final String countSql, final String windowCountSql,
+    final Object[] parameters, final Pageable pageable, final PageCount pageCount) {
+
+    CountStrategy countStrategy = pageCount == null ? CountStrategy.SEQUENTIAL : pageCount.value();
+    if (countStrategy == CountStrategy.CONCURRENT && Transactions.isActive()) {
+      countStrategy = CountStrategy.SEQUENTIAL;
+    }
+    String contentSql = sql + buildLimitSql(pageable);
+    Object[] contentParameters = concat(parameters, buildLimitParameters(pageable));
+    List<E> content;
+    long count;
+    switch (countStrategy) {
+    case CONCURRENT:
+      final boolean primaryReads = DataSourceRouter.isReadingFromPrimary();
+      FutureTask<Long> countFuture = new FutureTask<Long>(new Callable<Long>() {
+
+        @Override
+        public Long call() {
+
+          if (!primaryReads) {
+            return count(countSql, parameters);
+          }
+          DataSourceRouter.beginPrimaryReads();
+          try {
+            return count(countSql, parameters);
+          } finally {
+            DataSourceRouter.endPrimaryReads();
           }
         }
-        resultSet.close();
-      } catch (Exception e) {
-        throw new DataAccessException(e);
+      });
+      getCountExecutor().execute(countFuture);
+      content = findAll(contentSql, contentParameters);
+      count = getCount(countFuture);
+      break;
+    case WINDOW:
+      content = newArrayList();
+      count = findAllWithTotalCount(windowCountSql + buildLimitSql(pageable), contentParameters,
+        content);
+      if (count < 0) {
+        count = count(countSql, parameters);
       }
-      statement.close();
+      break;
+    case CACHED:
+      boolean cacheable = !Transactions.isActive();
+      Long cachedCount = cacheable ? countCache.get(countSql, parameters) : null;
+      if (cachedCount == null) {
+        long generation = countCache.getGeneration();
+        cachedCount = count(countSql, parameters);
+        if (cacheable) {
+          countCache.put(countSql, parameters, cachedCount, pageCount.ttl(), generation);
+        }
+      }
+      count = cachedCount;
+      content = findAll(contentSql, contentParameters);
+      break;
+    case APPROXIMATE:
+      count = count(APPROXIMATE_COUNT_SQL, tableName);
+      content = findAll(contentSql, contentParameters);
+      break;
+    case NONE:
+      contentParameters[contentParameters.length - 1] = pageable.pageSize + 1;
+      content = findAll(contentSql, contentParameters);
+      boolean hasNext = content.size() > pageable.pageSize;
+      if (hasNext) {
+        content.remove(content.size() - 1);
+      }
+      count = pageable.page * pageable.pageSize + content.size() + (hasNext ? 1 : 0);
+      break;
+    default:
+      count = count(countSql, parameters);
+      content = findAll(contentSql, contentParameters);
+      break;
+    }
+    return new Page<E>(pageable.page, pageable.pageSize, count,
+      (int) ((count + pageable.pageSize - 1) / pageable.pageSize), content);
+  }
+
+  /**
+   * Returns the executor of the {@link CountStrategy#CONCURRENT} counts of the
+   * primary pool, shared by all daos of the pool. It runs at most as many
+   * counts as the connections of all pools, a count that finds no free thread
+   * runs on the caller.
+   */
+  private Executor getCountExecutor() {
+
+    return dataSourceRouter.getPrimary().getCountExecutor(dataSourceRouter.getMaxConnections());
+  }
+
+  private long getCount(final Future<Long> countFuture) {
+
+    try {
+      return countFuture.get();
+    } catch (InterruptedException e) {
+      countFuture.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new DataAccessException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new DataAccessException(e.getCause());
+    }
+  }
+
+  /**
+   * Fetches the rows of a window count query into the given list and returns
+   * the total count, -1 if no row is returned.
+   */
+  private long findAllWithTotalCount(final String sql, final Object[] parameters,
+    final List<E> elements) {
+
+    long count = -1;
+    DataSourcePool readPool = dataSourceRouter.getReadPool();
+    Connection connection = acquireConnection(readPool);
+    try (PreparedStatement statement = prepareStatement(connection, sql, parameters);
+      ResultSet resultSet = CallTimer.executeQuery(statement, sql, parameters)) {
+      long mappingStartTime = CallTimer.startMapping();
+      int[] columnIndexes = rowMapper.getColumnIndexes(resultSet);
+      int countColumnIndex = resultSet.findColumn(QueryPlan.TOTAL_COUNT_COLUMN);
+      while (resultSet.next()) {
+        count = resultSet.getLong(countColumnIndex);
+        elements.add(rowMapper.mapRow(resultSet, columnIndexes));
+      }
+      CallTimer.recordMapping(mappingStartTime, elements.size(), entityClass);
     } catch (SQLException e) {
       throw new MysqlSqlException(e);
+    } finally {
+      releaseConnection(readPool, connection);
     }
-    dataSourcePool.freeConnection(connection);
-    return result;
+    return count;
+  }
+
+  /**
+   * Fetches one page after the sort key values of the pageable with
+   * <code>where (sort columns) &gt; (last values) order by sort columns limit
+   * page size + 1</code>, the extra row tells whether there is a next page.
+   *
+   * @param conjunction
+   *          joins the seek predicate to the sql, " where " or " and ".
+   */
+  private KeysetPage<E> findKeysetPage(final String sql, final String conjunction,
+    final Object[] parameters, final KeysetPageable pageable) {
+
+    List<Field> sortFields = newArrayList();
+    if (pageable.fields != null) {
+      for (String fieldName : pageable.fields) {
+        Field field = fieldNameToField.get(fieldName);
+        if (field == null) {
+          throw new IllegalArgumentException(format("Entity %s has no field %s.",
+            entityClass.getName(), fieldName));
+        }
+        sortFields.add(field);
+      }
+    }
+    if (!sortFields.contains(idField)) {
+      sortFields.add(idField);
+    }
+    StringBuilder sqlBuilder = new StringBuilder(sql);
+    List<Object> allParameters = newArrayList(parameters);
+    String direction = pageable.descending ? " desc" : " asc";
+    if (pageable.lastValues != null) {
+      if (pageable.lastValues.length != sortFields.size()) {
+        throw new IllegalArgumentException(format("%s sort key values expected but %s given.",
+          sortFields.size(), pageable.lastValues.length));
+      }
+      StringBuilder placeholders = new StringBuilder();
+      sqlBuilder.append(conjunction).append(sortFields.size() > 1 ? "(" : "");
+      for (int i = 0; i < sortFields.size(); i++) {
+        sqlBuilder.append(i == 0 ? "" : ",").append(getColumnName(sortFields.get(i)));
+        placeholders.append(i == 0 ? "?" : ",?");
+        allParameters.add(pageable.lastValues[i]);
+      }
+      sqlBuilder.append(sortFields.size() > 1 ? ")" : "");
+      sqlBuilder.append(pageable.descending ? " < " : " > ");
+      sqlBuilder.append(sortFields.size() > 1 ? "(" + placeholders + ")" : placeholders);
+    }
+    sqlBuilder.append(" order by ");
+    for (int i = 0; i < sortFields.size(); i++) {
+      sqlBuilder.append(i == 0 ? "" : ",").append(getColumnName(sortFields.get(i)));
+      sqlBuilder.append(direction);
+    }
+    sqlBuilder.append(" limit ?");
+    allParameters.add(pageable.pageSize + 1);
+    List<E> content = findAll(sqlBuilder.toString(), allParameters.toArray());
+    KeysetPageable next = null;
+    if (content.size() > pageable.pageSize) {
+      content.remove(content.size() - 1);
+      E lastElement = content.get(content.size() - 1);
+      Object[] lastValues = new Object[sortFields.size()];
+      for (int i = 0; i < lastValues.length; i++) {
+        lastValues[i] = getFieldValue(sortFields.get(i), lastElement);
+      }
+      next = pageable.next(lastValues);
+    }
+    return new KeysetPage<E>(content, pageable.pageSize, next);
   }
 
   private String buildLimitSql(final Pageable pageable) {
@@ -408,42 +1643,28 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
         }
         orderBySql = orderBySqlBuilder.substring(0, orderBySqlBuilder.length() - 1);
       }
-      Integer from = pageable.page * pageable.pageSize;
-      String limitSql = " limit " + from + "," + pageable.pageSize;
+      String limitSql = " limit ?,?";
       return orderBySql == null ? limitSql : orderBySql + limitSql;
     }
   }
 
-  private void lockTable(final Statement statement) throws SQLException {
+  private Object[] buildLimitParameters(final Pageable pageable) {
 
-    statement.execute(lockTableSql);
+    return pageable == null ? new Object[0] : new Object[] { pageable.page * pageable.pageSize,
+        pageable.pageSize };
   }
 
-  private void unlockTable(final Statement statement) throws SQLException {
+  private Object[] concat(final Object[] parameters, final Object[] moreParameters) {
 
-    statement.execute(unlockTableSql);
+    Object[] allParameters = new Object[parameters.length + moreParameters.length];
+    System.arraycopy(parameters, 0, allParameters, 0, parameters.length);
+    System.arraycopy(moreParameters, 0, allParameters, parameters.length, moreParameters.length);
+    return allParameters;
   }
 
-  private Object getDataFromResultSetByField(final ResultSet resultSet, final Field field)
-    throws SQLException {
+  private String getColumnName(final Field field) {
 
-    Object value = null;
-    Type genericType = field.getGenericType();
-    String fieldName = getFieldColumnName(field);
-    if (genericType == Integer.class || genericType == int.class) {
-      value = resultSet.getInt(fieldName);
-    } else if (genericType == Long.class || genericType == long.class) {
-      value = resultSet.getLong(fieldName);
-    } else if (genericType == String.class) {
-      value = resultSet.getString(fieldName);
-    } else if (genericType == Boolean.class || genericType == boolean.class) {
-      value = resultSet.getBoolean(fieldName);
-    } else if (genericType == Byte.class || genericType == byte.class) {
-      value = resultSet.getByte(fieldName);
-    } else if (genericType == Short.class || genericType == short.class) {
-      value = resultSet.getShort(fieldName);
-    }
-    return value;
+    return field == idField ? idName : getFieldColumnName(field);
   }
 
   private String getFieldColumnName(final Field field) {
@@ -453,24 +1674,39 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
       : column.name();
   }
 
-  private String coverToSqlValue(final Object value) {
+  private Object[] getInsertParameters(final E entity) {
 
-    if (value == null) {
-      return "null";
-    } else if (value instanceof String) {
-      return format("'%s'", value);
-    } else if (isCollection(value) || isArray(value)) {
-      @SuppressWarnings("rawtypes")
-      Collection<?> values = isCollection(value) ? (Collection) value : ArrayUtils.toList(value,
-        Object.class);
-      List<String> coverdValues = new ArrayList<String>(values.size());
-      for (Object o : values) {
-        coverdValues.add(coverToSqlValue(o));
-      }
-      return CollectionUtils.join(coverdValues, ",");
-    } else {
-      return value.toString();
+    Object[] parameters = new Object[insertFields.size()];
+    for (int i = 0; i < parameters.length; i++) {
+      parameters[i] = getFieldValue(insertFields.get(i), entity);
     }
+    return parameters;
+  }
+
+  private Object[] getUpdateParameters(final E entity) {
+
+    Object[] parameters = new Object[entityFields.size() + 1];
+    for (int i = 0; i < entityFields.size(); i++) {
+      parameters[i] = getFieldValue(entityFields.get(i), entity);
+    }
+    parameters[entityFields.size()] = getFieldValue(idField, entity);
+    return parameters;
+  }
+
+  /**
+   * Converts a generated id to the id type of the entity.
+   */
+  private Object toId(final long id) {
+
+    Class<?> idType = idField.getType();
+    if (idType == Integer.class || idType == int.class) {
+      return (int) id;
+    } else if (idType == Short.class || idType == short.class) {
+      return (short) id;
+    } else if (idType == String.class) {
+      return String.valueOf(id);
+    }
+    return id;
   }
 
   private Object getFieldValue(final Field field, final Object source) {
@@ -491,17 +1727,27 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
     }
   }
 
+  private String findOneSql;
+
+  private String findAllSql;
+
   private String deleteSql;
 
   private String updateSql;
 
   private String insertSql;
 
+  private String insertSqlPrefix;
+
+  private String insertValuesSql;
+
   private String countSql;
 
-  private String lockTableSql;
+  private String findAllWindowCountSql;
+
+  private PageCount daoPageCount;
 
-  private String unlockTableSql;
+  private final CountCache countCache = new CountCache(COUNT_CACHE_SIZE);
 
   private String idName;
 
@@ -511,13 +1757,33 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
 
   private Field idField;
 
+  private List<Field> insertFields;
+
+  private HiLoIdGenerator idGenerator;
+
   private Class<E> entityClass;
 
+  private EntityRowMapper<E> rowMapper;
+
+  private IdCache<E> idCache;
+
+  private ResultCache resultCache;
+
   private Class<I> idClass;
 
   private Map<String, Field> fieldNameToField = newLinkedHashMap();
 
-  private Map<String, Method> methodNameToMethod = newHashMap();
+  private Map<Method, MethodInvoker> methodInvokers = newHashMap();
+
+  private Map<Method, DaoMethodMetrics> methodMetrics = newHashMap();
+
+  private String daoName;
+
+  private SlowQueryLog slowQueryLog;
+
+  private DataSourceRouter dataSourceRouter;
+
+  private Properties settings;
 
   private DataSourcePool dataSourcePool;
 
@@ -527,6 +1793,13 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
 
   private Pattern simpleSelectQueryPattern = Pattern.compile("^from.*", Pattern.CASE_INSENSITIVE);
 
+  private Pattern selectAllPattern = Pattern.compile("select\\s+\\*", Pattern.CASE_INSENSITIVE);
+
+  private Pattern wherePattern = Pattern.compile("\\swhere\\s", Pattern.CASE_INSENSITIVE);
+
+  private Pattern unseekableQueryPattern = Pattern.compile(
+    ".*\\s(group\\s+by|order\\s+by|limit)\\s.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
   private Pattern[] selectQueryPatterns = { Pattern.compile("^select.*", Pattern.CASE_INSENSITIVE),
       simpleSelectQueryPattern };
 
@@ -542,6 +1815,12 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
       if (method.getName().equals("save")) {
         saveMethod = method;
       }
+      if (method.getName().equals("saveAll") && ArrayUtils.count(method.getParameterTypes()) == 1) {
+        saveAllMethod = method;
+      }
+      if (method.getName().equals("saveAll") && ArrayUtils.count(method.getParameterTypes()) == 2) {
+        batchSaveAllMethod = method;
+      }
       if (method.getName().equals("findAll") && ArrayUtils.count(method.getParameterTypes()) == 0) {
         findAllMethod = method;
       }
@@ -549,22 +1828,62 @@ public class MysqlDaoInterpreter<E, I extends Serializable> implements MysqlDao<
         && method.getParameterTypes()[0].equals(Pageable.class)) {
         pageableFindAllMethod = method;
       }
+      if (method.getName().equals("findAll") && ArrayUtils.count(method.getParameterTypes()) == 1
+        && method.getParameterTypes()[0].equals(KeysetPageable.class)) {
+        keysetFindAllMethod = method;
+      }
       if (method.getName().equals("findOne")) {
         findOneMethod = method;
       }
     }
   }
 
+  private static final int DEFAULT_BATCH_SIZE = 500;
+
+  private static final int COUNT_CACHE_SIZE = 1024;
+
+  private static final String ASYNC_THREADS = "database.async.threads";
+
+  private static final String ASYNC_VIRTUAL_THREADS = "database.async.virtual.threads";
+
+  private static final String QUERY_CACHE_ROWS = "database.query.cache.rows";
+
+  private static final String SLOW_QUERY_THRESHOLD = "database.slow.query.threshold";
+
+  private static final String SLOW_QUERY_LOG_INTERVAL = "database.slow.query.log.interval";
+
+  private static final String SLOW_QUERY_REDACT_ARGUMENTS = "database.slow.query.redact.arguments";
+
+  private static final String SLOW_QUERY_EXPLAIN = "database.slow.query.explain";
+
+  private static final String ENTITY_CACHE_PROPERTY_PREFIX = "database.entity.cache.";
+
+  private static final String APPROXIMATE_COUNT_SQL = "select table_rows from"
+    + " information_schema.tables where table_schema = database() and table_name = ?";
+
+  /**
+   * The maximum number of placeholders mysql accepts in a prepared statement.
+   */
+  private static final int MAX_PLACEHOLDERS = 65535;
+
   private static Method findOneMethod;
 
   private static Method findAllMethod;
 
   private static Method pageableFindAllMethod;
 
+  private static Method keysetFindAllMethod;
+
   private static Method saveMethod;
 
+  private static Method saveAllMethod;
+
+  private static Method batchSaveAllMethod;
+
   private static Method deleteMethod;
 
   private static Method countMethod;
 
+  private static final Logger logger = LoggerFactory.getLogger(MysqlDaoInterpreter.class);
+
 }
@@ -0,0 +1,554 @@
+package org.codelogger.dao.mysql;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection handed out by {@link DataSourcePool}. Closing it returns it to
+ * the pool, and statements prepared by {@link #prepareStatement(String)} are
+ * served from the {@link StatementCache} of the connection.
+ */
+class PooledConnection implements Connection {
+
+  PooledConnection(final Connection connection, final DataSourcePool dataSourcePool,
+    final StatementCache statementCache) {
+
+    this.connection = connection;
+    this.dataSourcePool = dataSourcePool;
+    this.statementCache = statementCache;
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql) throws SQLException {
+
+    return statementCache == null ? connection.prepareStatement(sql) : statementCache
+      .prepareStatement(this, sql, Statement.NO_GENERATED_KEYS);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int autoGeneratedKeys)
+    throws SQLException {
+
+    return statementCache == null ? connection.prepareStatement(sql, autoGeneratedKeys)
+      : statementCache.prepareStatement(this, sql, autoGeneratedKeys);
+  }
+
+  /**
+   * Returns this connection to the pool.
+   */
+  @Override
+  public void close() throws SQLException {
+
+    dataSourcePool.freeConnection(this);
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+
+    return connection.isClosed();
+  }
+
+  /**
+   * Marks this idle connection as borrowed, returns false if another thread
+   * took or removed it first.
+   */
+  boolean markBorrowed() {
+
+    if (state.compareAndSet(IDLE, BORROWED)) {
+      borrowTime = System.nanoTime();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Marks this connection as returned and records when it was last used,
+   * returns false if it is not borrowed.
+   */
+  boolean markReturned() {
+
+    lastUsedTime = System.currentTimeMillis();
+    return state.compareAndSet(BORROWED, IDLE);
+  }
+
+  /**
+   * Marks this idle connection as removed from the pool, returns false if it
+   * is borrowed or removed already.
+   */
+  boolean markRemoved() {
+
+    return state.compareAndSet(IDLE, REMOVED);
+  }
+
+  /**
+   * Marks a borrowed connection that failed validation as removed.
+   */
+  void markBroken() {
+
+    state.set(REMOVED);
+  }
+
+  boolean isIdle() {
+
+    return state.get() == IDLE;
+  }
+
+  boolean isBorrowed() {
+
+    return state.get() == BORROWED;
+  }
+
+  /**
+   * Rolls back what the borrower left uncommitted and restores autocommit and
+   * read-write, so the next borrower gets a clean connection.
+   */
+  void resetState() throws SQLException {
+
+    if (!autoCommit) {
+      connection.rollback();
+      connection.setAutoCommit(true);
+      autoCommit = true;
+    }
+    if (readOnly) {
+      connection.setReadOnly(false);
+      readOnly = false;
+    }
+  }
+
+  /**
+   * Records where this connection was borrowed, for the leak detection of the
+   * pool. Null clears it.
+   */
+  void setBorrowTrace(final Throwable borrowTrace) {
+
+    this.borrowTrace = borrowTrace;
+    leakReported = false;
+  }
+
+  Throwable getBorrowTrace() {
+
+    return borrowTrace;
+  }
+
+  /**
+   * Marks this connection as reported leaked, returns false if it was already.
+   */
+  boolean markLeakReported() {
+
+    if (leakReported) {
+      return false;
+    }
+    leakReported = true;
+    return true;
+  }
+
+  boolean isLeakReported() {
+
+    return leakReported;
+  }
+
+  /**
+   * Marks this connection to be closed instead of pooled when its borrower
+   * returns it.
+   */
+  void markCloseOnReturn() {
+
+    closeOnReturn = true;
+  }
+
+  boolean isCloseOnReturn() {
+
+    return closeOnReturn;
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} of the last borrow.
+   */
+  long getBorrowTime() {
+
+    return borrowTime;
+  }
+
+  long getLastUsedTime() {
+
+    return lastUsedTime;
+  }
+
+  Connection getPhysicalConnection() {
+
+    return connection;
+  }
+
+  /**
+   * Closes the cached statements and the physical connection.
+   */
+  void closePhysicalConnection() throws SQLException {
+
+    if (statementCache != null) {
+      statementCache.closeAll();
+    }
+    connection.close();
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+
+    return connection.createStatement();
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql) throws SQLException {
+
+    return connection.prepareCall(sql);
+  }
+
+  @Override
+  public String nativeSQL(final String sql) throws SQLException {
+
+    return connection.nativeSQL(sql);
+  }
+
+  @Override
+  public void setAutoCommit(final boolean autoCommit) throws SQLException {
+
+    connection.setAutoCommit(autoCommit);
+    this.autoCommit = autoCommit;
+  }
+
+  @Override
+  public boolean getAutoCommit() throws SQLException {
+
+    return connection.getAutoCommit();
+  }
+
+  @Override
+  public void commit() throws SQLException {
+
+    connection.commit();
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+
+    connection.rollback();
+  }
+
+  @Override
+  public DatabaseMetaData getMetaData() throws SQLException {
+
+    return connection.getMetaData();
+  }
+
+  @Override
+  public void setReadOnly(final boolean readOnly) throws SQLException {
+
+    connection.setReadOnly(readOnly);
+    this.readOnly = readOnly;
+  }
+
+  @Override
+  public boolean isReadOnly() throws SQLException {
+
+    return connection.isReadOnly();
+  }
+
+  @Override
+  public void setCatalog(final String catalog) throws SQLException {
+
+    connection.setCatalog(catalog);
+  }
+
+  @Override
+  public String getCatalog() throws SQLException {
+
+    return connection.getCatalog();
+  }
+
+  @Override
+  public void setTransactionIsolation(final int level) throws SQLException {
+
+    connection.setTransactionIsolation(level);
+  }
+
+  @Override
+  public int getTransactionIsolation() throws SQLException {
+
+    return connection.getTransactionIsolation();
+  }
+
+  @Override
+  public SQLWarning getWarnings() throws SQLException {
+
+    return connection.getWarnings();
+  }
+
+  @Override
+  public void clearWarnings() throws SQLException {
+
+    connection.clearWarnings();
+  }
+
+  @Override
+  public Statement createStatement(final int resultSetType, final int resultSetConcurrency)
+    throws SQLException {
+
+    return connection.createStatement(resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+    final int resultSetConcurrency) throws SQLException {
+
+    return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql, final int resultSetType,
+    final int resultSetConcurrency) throws SQLException {
+
+    return connection.prepareCall(sql, resultSetType, resultSetConcurrency);
+  }
+
+  @Override
+  public Map<String, Class<?>> getTypeMap() throws SQLException {
+
+    return connection.getTypeMap();
+  }
+
+  @Override
+  public void setTypeMap(final Map<String, Class<?>> map) throws SQLException {
+
+    connection.setTypeMap(map);
+  }
+
+  @Override
+  public void setHoldability(final int holdability) throws SQLException {
+
+    connection.setHoldability(holdability);
+  }
+
+  @Override
+  public int getHoldability() throws SQLException {
+
+    return connection.getHoldability();
+  }
+
+  @Override
+  public Savepoint setSavepoint() throws SQLException {
+
+    return connection.setSavepoint();
+  }
+
+  @Override
+  public Savepoint setSavepoint(final String name) throws SQLException {
+
+    return connection.setSavepoint(name);
+  }
+
+  @Override
+  public void rollback(final Savepoint savepoint) throws SQLException {
+
+    connection.rollback(savepoint);
+  }
+
+  @Override
+  public void releaseSavepoint(final Savepoint savepoint) throws SQLException {
+
+    connection.releaseSavepoint(savepoint);
+  }
+
+  @Override
+  public Statement createStatement(final int resultSetType, final int resultSetConcurrency,
+    final int resultSetHoldability) throws SQLException {
+
+    return connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+    final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+
+    return connection.prepareStatement(sql, resultSetType, resultSetConcurrency,
+      resultSetHoldability);
+  }
+
+  @Override
+  public CallableStatement prepareCall(final String sql, final int resultSetType,
+    final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+
+    return connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final int[] columnIndexes)
+    throws SQLException {
+
+    return connection.prepareStatement(sql, columnIndexes);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(final String sql, final String[] columnNames)
+    throws SQLException {
+
+    return connection.prepareStatement(sql, columnNames);
+  }
+
+  @Override
+  public Clob createClob() throws SQLException {
+
+    return connection.createClob();
+  }
+
+  @Override
+  public Blob createBlob() throws SQLException {
+
+    return connection.createBlob();
+  }
+
+  @Override
+  public NClob createNClob() throws SQLException {
+
+    return connection.createNClob();
+  }
+
+  @Override
+  public SQLXML createSQLXML() throws SQLException {
+
+    return connection.createSQLXML();
+  }
+
+  @Override
+  public boolean isValid(final int timeout) throws SQLException {
+
+    return connection.isValid(timeout);
+  }
+
+  @Override
+  public void setClientInfo(final String name, final String value) throws SQLClientInfoException {
+
+    connection.setClientInfo(name, value);
+  }
+
+  @Override
+  public void setClientInfo(final Properties properties) throws SQLClientInfoException {
+
+    connection.setClientInfo(properties);
+  }
+
+  @Override
+  public String getClientInfo(final String name) throws SQLException {
+
+    return connection.getClientInfo(name);
+  }
+
+  @Override
+  public Properties getClientInfo() throws SQLException {
+
+    return connection.getClientInfo();
+  }
+
+  @Override
+  public Array createArrayOf(final String typeName, final Object[] elements) throws SQLException {
+
+    return connection.createArrayOf(typeName, elements);
+  }
+
+  @Override
+  public Struct createStruct(final String typeName, final Object[] attributes) throws SQLException {
+
+    return connection.createStruct(typeName, attributes);
+  }
+
+  @Override
+  public void setSchema(final String schema) throws SQLException {
+
+    connection.setSchema(schema);
+  }
+
+  @Override
+  public String getSchema() throws SQLException {
+
+    return connection.getSchema();
+  }
+
+  @Override
+  public void abort(final Executor executor) throws SQLException {
+
+    connection.abort(executor);
+  }
+
+  @Override
+  public void setNetworkTimeout(final Executor executor, final int milliseconds)
+    throws SQLException {
+
+    connection.setNetworkTimeout(executor, milliseconds);
+  }
+
+  @Override
+  public int getNetworkTimeout() throws SQLException {
+
+    return connection.getNetworkTimeout();
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+
+    return connection.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+
+    return connection.isWrapperFor(iface);
+  }
+
+  private final Connection connection;
+
+  private final DataSourcePool dataSourcePool;
+
+  private final StatementCache statementCache;
+
+  private final AtomicInteger state = new AtomicInteger(IDLE);
+
+  private volatile long lastUsedTime = System.currentTimeMillis();
+
+  private volatile long borrowTime;
+
+  private volatile Throwable borrowTrace;
+
+  private volatile boolean leakReported;
+
+  private volatile boolean closeOnReturn;
+
+  /**
+   * Autocommit and read-only as set through this connection, only touched by
+   * the borrower.
+   */
+  private boolean autoCommit = true;
+
+  private boolean readOnly;
+
+  private static final int IDLE = 0;
+
+  private static final int BORROWED = 1;
+
+  private static final int REMOVED = -1;
+
+}
@@ -0,0 +1,40 @@
+package org.codelogger.dao.mysql;
+
+import java.util.Arrays;
+
+/**
+ * Cache key of a statement and its bound parameters.
+ */
+class QueryKey {
+
+  QueryKey(final String sql, final Object[] parameters) {
+
+    this.sql = sql;
+    this.parameters = parameters;
+    hashCode = 31 * sql.hashCode() + Arrays.hashCode(parameters);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+
+    if (!(obj instanceof QueryKey)) {
+      return false;
+    }
+    QueryKey other = (QueryKey) obj;
+    return hashCode == other.hashCode && sql.equals(other.sql)
+      && Arrays.equals(parameters, other.parameters);
+  }
+
+  private final String sql;
+
+  private final Object[] parameters;
+
+  private final int hashCode;
+
+}
@@ -0,0 +1,300 @@
+package org.codelogger.dao.mysql;
+
+import static org.codelogger.utils.ArrayUtils.isArray;
+import static org.codelogger.utils.CollectionUtils.isCollection;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.codelogger.dao.mysql.DerivedQuery.LikeMode;
+import org.codelogger.dao.stereotype.CountStrategy;
+import org.codelogger.dao.stereotype.PageCount;
+
+/**
+ * Immutable execution plan of a dao method. It is compiled once when the dao is
+ * constructed, so a call only has to bind its arguments to the <code>?</code>
+ * placeholders of the plan.
+ */
+public class QueryPlan {
+
+  public enum QueryType {
+    SELECT, UPDATE, DELETE
+  }
+
+  public enum ResultType {
+    ONE, LIST, PAGE, KEYSET_PAGE, STREAM, ITERATOR, CONSUMER, EXISTS, COUNT, NONE
+  }
+
+  /**
+   * @param queryType
+   *          the type of the statement.
+   * @param resultType
+   *          how the result of the statement is returned to the caller.
+   * @param sql
+   *          the statement with <code>?</code> placeholders.
+   * @param countSql
+   *          the count statement of a page query, it must have the same
+   *          placeholders as <code>sql</code>.
+   * @param argumentIndexes
+   *          the method argument index bound to each placeholder.
+   * @param parameterTypes
+   *          the parameter types of the method.
+   * @param pageableIndex
+   *          the argument index of the pageable or keyset pageable, -1 if
+   *          there is none.
+   * @param pageCount
+   *          how the total of a page query is counted, null for
+   *          {@link CountStrategy#SEQUENTIAL}.
+   */
+  public QueryPlan(final QueryType queryType, final ResultType resultType, final String sql,
+    final String countSql, final int[] argumentIndexes, final Class<?>[] parameterTypes,
+    final int pageableIndex, final PageCount pageCount) {
+
+    this(queryType, resultType, sql, countSql, argumentIndexes, parameterTypes, pageableIndex,
+      pageCount, null);
+  }
+
+  /**
+   * @param likeModes
+   *          the like mode of each placeholder, null if there is none, see
+   *          {@link DerivedQuery#getLikeModes()}.
+   */
+  QueryPlan(final QueryType queryType, final ResultType resultType, final String sql,
+    final String countSql, final int[] argumentIndexes, final Class<?>[] parameterTypes,
+    final int pageableIndex, final PageCount pageCount, final LikeMode[] likeModes) {
+
+    this.queryType = queryType;
+    this.resultType = resultType;
+    this.sql = sql;
+    this.countSql = countSql;
+    this.argumentIndexes = argumentIndexes;
+    this.pageableIndex = pageableIndex;
+    this.pageCount = pageCount;
+    this.likeModes = likeModes;
+    windowCountSql = pageCount != null && pageCount.value() == CountStrategy.WINDOW
+      ? toWindowCountSql(sql) : null;
+    expandedArguments = new boolean[argumentIndexes.length];
+    boolean expandable = false;
+    for (int i = 0; i < argumentIndexes.length; i++) {
+      Class<?> parameterType = parameterTypes[argumentIndexes[i]];
+      expandedArguments[i] = Collection.class.isAssignableFrom(parameterType)
+        || parameterType.isArray() && parameterType != byte[].class;
+      expandable |= expandedArguments[i];
+    }
+    this.expandable = expandable;
+    sqlSegments = expandable ? splitByPlaceholders(sql) : null;
+    countSqlSegments = expandable && countSql != null ? splitByPlaceholders(countSql) : null;
+    windowCountSqlSegments = expandable && windowCountSql != null
+      ? splitByPlaceholders(windowCountSql) : null;
+  }
+
+  /**
+   * Returns the statement of this plan, placeholders bound to a collection or
+   * an array argument are expanded to one placeholder per element. An empty
+   * one becomes a subquery without rows, so <code>in</code> matches no row and
+   * <code>not in</code> matches every row.
+   */
+  public String getSql(final Object[] args) {
+
+    return expandable ? expand(sqlSegments, args) : sql;
+  }
+
+  /**
+   * Returns the count statement of this plan, expanded like
+   * {@link #getSql(Object[])}.
+   */
+  public String getCountSql(final Object[] args) {
+
+    return expandable ? expand(countSqlSegments, args) : countSql;
+  }
+
+  /**
+   * Returns the select of this plan that also returns the total count in the
+   * {@link #TOTAL_COUNT_COLUMN} column, expanded like
+   * {@link #getSql(Object[])}.
+   */
+  public String getWindowCountSql(final Object[] args) {
+
+    return expandable ? expand(windowCountSqlSegments, args) : windowCountSql;
+  }
+
+  /**
+   * Returns the values to bind, in placeholder order, for the given method
+   * arguments.
+   */
+  public Object[] getParameters(final Object[] args) {
+
+    if (!expandable) {
+      Object[] parameters = new Object[argumentIndexes.length];
+      for (int i = 0; i < argumentIndexes.length; i++) {
+        parameters[i] = getParameter(i, args[argumentIndexes[i]]);
+      }
+      return parameters;
+    }
+    List<Object> parameters = new ArrayList<Object>(argumentIndexes.length);
+    for (int i = 0; i < argumentIndexes.length; i++) {
+      Object arg = args[argumentIndexes[i]];
+      if (expandedArguments[i] && isCollection(arg)) {
+        parameters.addAll((Collection<?>) arg);
+      } else if (expandedArguments[i] && isArray(arg)) {
+        for (int j = 0, length = Array.getLength(arg); j < length; j++) {
+          parameters.add(Array.get(arg, j));
+        }
+      } else {
+        parameters.add(getParameter(i, arg));
+      }
+    }
+    return parameters.toArray();
+  }
+
+  public QueryType getQueryType() {
+
+    return queryType;
+  }
+
+  public ResultType getResultType() {
+
+    return resultType;
+  }
+
+  public String getSql() {
+
+    return sql;
+  }
+
+  public String getCountSql() {
+
+    return countSql;
+  }
+
+  public int getPageableIndex() {
+
+    return pageableIndex;
+  }
+
+  public PageCount getPageCount() {
+
+    return pageCount;
+  }
+
+  @Override
+  public String toString() {
+
+    return "QueryPlan [queryType=" + queryType + ", resultType=" + resultType + ", sql=" + sql
+      + "]";
+  }
+
+  private String expand(final String[] segments, final Object[] args) {
+
+    StringBuilder sqlBuilder = new StringBuilder(segments[0]);
+    for (int i = 0; i < argumentIndexes.length; i++) {
+      if (expandedArguments[i]) {
+        Object arg = args[argumentIndexes[i]];
+        int size = isCollection(arg) ? ((Collection<?>) arg).size() : isArray(arg) ? Array
+          .getLength(arg) : 1;
+        if (size == 0) {
+          sqlBuilder.append(EMPTY_LIST_SQL);
+        }
+        for (int j = 0; j < size; j++) {
+          sqlBuilder.append(j == 0 ? "?" : ",?");
+        }
+      } else {
+        sqlBuilder.append("?");
+      }
+      sqlBuilder.append(segments[i + 1]);
+    }
+    return sqlBuilder.toString();
+  }
+
+  private Object getParameter(final int placeholder, final Object arg) {
+
+    return likeModes == null || likeModes[placeholder] == null ? arg : likeModes[placeholder]
+      .toPattern(arg);
+  }
+
+  /**
+   * Adds <code>count(*) over ()</code> as {@link #TOTAL_COUNT_COLUMN} to the
+   * columns of a select, so the total count is returned with every row.
+   */
+  static String toWindowCountSql(final String sql) {
+
+    String windowCountColumn = "count(*) over () as " + TOTAL_COUNT_COLUMN;
+    if (selectAllPattern.matcher(sql).lookingAt()) {
+      return sql.replaceFirst("^(?i)select\\s+\\*", "select *, " + windowCountColumn);
+    } else if (selectDistinctPattern.matcher(sql).lookingAt()) {
+      throw new IllegalArgumentException("Window count does not support select distinct: " + sql);
+    }
+    return sql.replaceFirst("^(?i)select\\s", "select " + windowCountColumn + ", ");
+  }
+
+  /**
+   * Splits the sql around its <code>?</code> placeholders, ignoring question
+   * marks inside quoted literals.
+   */
+  static String[] splitByPlaceholders(final String sql) {
+
+    List<String> segments = new ArrayList<String>();
+    char quote = 0;
+    int start = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        segments.add(sql.substring(start, i));
+        start = i + 1;
+      }
+    }
+    segments.add(sql.substring(start));
+    return segments.toArray(new String[segments.size()]);
+  }
+
+  private final QueryType queryType;
+
+  private final ResultType resultType;
+
+  private final String sql;
+
+  private final String countSql;
+
+  private final String[] sqlSegments;
+
+  private final String[] countSqlSegments;
+
+  private final int[] argumentIndexes;
+
+  private final boolean[] expandedArguments;
+
+  private final boolean expandable;
+
+  private final int pageableIndex;
+
+  private final PageCount pageCount;
+
+  private final LikeMode[] likeModes;
+
+  private final String windowCountSql;
+
+  private final String[] windowCountSqlSegments;
+
+  private static final String EMPTY_LIST_SQL = "select null from dual where false";
+
+  /**
+   * The column of the total count added by {@link CountStrategy#WINDOW}.
+   */
+  public static final String TOTAL_COUNT_COLUMN = "dao_total_count";
+
+  private static final Pattern selectAllPattern = Pattern.compile("select\\s+\\*",
+    Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern selectDistinctPattern = Pattern.compile("select\\s+distinct\\s",
+    Pattern.CASE_INSENSITIVE);
+
+}
@@ -0,0 +1,123 @@
+package org.codelogger.dao.mysql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches query results per statement and parameters for a fixed time. The
+ * cache is bounded by the total number of cached rows, the least recently used
+ * results are evicted first. Like {@link IdCache}, a result read before the
+ * cache was cleared is not cached.
+ */
+class ResultCache {
+
+  ResultCache(final int maxRows) {
+
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Returns the cached result, which may be null, or {@link #MISS} if there is
+   * none or it has expired.
+   */
+  synchronized Object get(final String sql, final Object[] parameters) {
+
+    QueryKey queryKey = new QueryKey(sql, parameters);
+    CachedResult cachedResult = results.get(queryKey);
+    if (cachedResult == null) {
+      statistics.recordMiss();
+      return MISS;
+    }
+    if (cachedResult.expireTime < System.currentTimeMillis()) {
+      remove(queryKey);
+      statistics.recordMiss();
+      return MISS;
+    }
+    statistics.recordHit();
+    return cachedResult.result;
+  }
+
+  /**
+   * Returns the generation to pass to
+   * {@link #put(String, Object[], Object, int, long, long)} for a result about
+   * to be read from the database.
+   */
+  synchronized long getGeneration() {
+
+    return generation;
+  }
+
+  /**
+   * Caches the result of the given number of rows unless the cache was cleared
+   * since the given generation.
+   */
+  synchronized void put(final String sql, final Object[] parameters, final Object result,
+    final int rows, final long ttl, final long readGeneration) {
+
+    if (readGeneration != generation || rows > maxRows) {
+      return;
+    }
+    QueryKey queryKey = new QueryKey(sql, parameters);
+    remove(queryKey);
+    results.put(queryKey, new CachedResult(result, rows, System.currentTimeMillis() + ttl));
+    cachedRows += rows;
+    Iterator<CachedResult> iterator = results.values().iterator();
+    while (cachedRows > maxRows) {
+      cachedRows -= iterator.next().rows;
+      iterator.remove();
+      statistics.recordEviction();
+    }
+  }
+
+  synchronized void clear() {
+
+    generation++;
+    results.clear();
+    cachedRows = 0;
+  }
+
+  CacheStatistics getStatistics() {
+
+    return statistics;
+  }
+
+  private void remove(final QueryKey queryKey) {
+
+    CachedResult cachedResult = results.remove(queryKey);
+    if (cachedResult != null) {
+      cachedRows -= cachedResult.rows;
+    }
+  }
+
+  private static class CachedResult {
+
+    CachedResult(final Object result, final int rows, final long expireTime) {
+
+      this.result = result;
+      this.rows = rows;
+      this.expireTime = expireTime;
+    }
+
+    private final Object result;
+
+    private final int rows;
+
+    private final long expireTime;
+
+  }
+
+  static final Object MISS = new Object();
+
+  private final Map<QueryKey, CachedResult> results = new LinkedHashMap<QueryKey, CachedResult>(
+    16, 0.75f, true);
+
+  private final CacheStatistics statistics = new CacheStatistics();
+
+  private final int maxRows;
+
+  private long cachedRows;
+
+  private long generation;
+
+}
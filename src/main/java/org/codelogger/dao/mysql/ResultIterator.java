@@ -0,0 +1,124 @@
+package org.codelogger.dao.mysql;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.codelogger.dao.exception.MysqlSqlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily maps the rows of a streaming result set. The result set, its statement
+ * and its connection are released as soon as the last row is read, a row fails
+ * or the iterator is closed, so an iterator that is not read to the end must be
+ * closed. Dao methods that iterate their results return this type rather than a
+ * plain {@link Iterator}, so their callers can close it.
+ */
+public class ResultIterator<E> implements Iterator<E>, Closeable {
+
+  ResultIterator(final Connection connection, final boolean releaseConnection,
+    final Statement statement, final ResultSet resultSet, final EntityRowMapper<E> rowMapper)
+    throws SQLException {
+
+    this.connection = connection;
+    this.releaseConnection = releaseConnection;
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.rowMapper = rowMapper;
+    columnIndexes = rowMapper.getColumnIndexes(resultSet);
+  }
+
+  @Override
+  public boolean hasNext() {
+
+    if (!closed && !fetched) {
+      try {
+        fetched = resultSet.next();
+      } catch (SQLException e) {
+        close();
+        throw new MysqlSqlException(e);
+      }
+      if (!fetched) {
+        close();
+      }
+    }
+    return fetched;
+  }
+
+  @Override
+  public E next() {
+
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    fetched = false;
+    try {
+      return rowMapper.mapRow(resultSet, columnIndexes);
+    } catch (SQLException e) {
+      close();
+      throw new MysqlSqlException(e);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void remove() {
+
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * Closes the result set and its statement and returns the connection to the
+   * pool, unless it belongs to a transaction. Closing an unfinished streaming
+   * result set makes the driver skip the remaining rows.
+   */
+  @Override
+  public void close() {
+
+    if (closed) {
+      return;
+    }
+    closed = true;
+    fetched = false;
+    try {
+      resultSet.close();
+      statement.close();
+    } catch (SQLException e) {
+      logger.debug("Close streaming result set failed.", e);
+    }
+    if (!releaseConnection) {
+      return;
+    }
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      logger.debug("Release connection[{}] failed.", connection, e);
+    }
+  }
+
+  private final Connection connection;
+
+  private final boolean releaseConnection;
+
+  private final Statement statement;
+
+  private final ResultSet resultSet;
+
+  private final EntityRowMapper<E> rowMapper;
+
+  private final int[] columnIndexes;
+
+  private boolean fetched;
+
+  private boolean closed;
+
+  private static final Logger logger = LoggerFactory.getLogger(ResultIterator.class);
+
+}
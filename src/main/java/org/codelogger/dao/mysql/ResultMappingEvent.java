@@ -0,0 +1,27 @@
+package org.codelogger.dao.mysql;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of mapping the rows of a result set to entities.
+ */
+@Name("org.codelogger.dao.ResultMapping")
+@Label("Result Mapping")
+@Category({ "Codelogger", "DAO" })
+@Description("Rows of a result set mapped to entities.")
+@Enabled(false)
+@StackTrace(false)
+class ResultMappingEvent extends jdk.jfr.Event {
+
+  @Label("Entity")
+  String entity;
+
+  @Label("Rows")
+  long rows;
+
+}
@@ -0,0 +1,135 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Totals of the slow executions of one statement fingerprint, see
+ * {@link MysqlDaoInterpreter#getSlowQueries(int)}.
+ */
+public class SlowQuery {
+
+  SlowQuery(final String fingerprint) {
+
+    this.fingerprint = fingerprint;
+  }
+
+  public String getFingerprint() {
+
+    return fingerprint;
+  }
+
+  /**
+   * Returns the dao method that last ran the statement slowly.
+   */
+  public String getMethod() {
+
+    return method;
+  }
+
+  public long getCount() {
+
+    return count;
+  }
+
+  public double getTotalMillis() {
+
+    return totalNanos / 1e6;
+  }
+
+  public double getMeanMillis() {
+
+    return count == 0 ? 0 : totalNanos / 1e6 / count;
+  }
+
+  public double getMaxMillis() {
+
+    return maxNanos / 1e6;
+  }
+
+  public long getMaxRows() {
+
+    return maxRows;
+  }
+
+  /**
+   * Returns the last <code>EXPLAIN</code> of the statement, null if none was
+   * captured.
+   */
+  public String getPlan() {
+
+    return plan;
+  }
+
+  void record(final String method, final long nanos, final long rows) {
+
+    this.method = method;
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+    maxRows = Math.max(maxRows, rows);
+  }
+
+  /**
+   * Returns how many slow executions were not logged before the current one
+   * if it is to be logged, -1 if it was logged less than the given interval
+   * ago.
+   */
+  long markLogged(final long now, final long logIntervalNanos) {
+
+    if (logged && now - lastLoggedTime < logIntervalNanos) {
+      unloggedCount++;
+      return -1;
+    }
+    logged = true;
+    lastLoggedTime = now;
+    long count = unloggedCount;
+    unloggedCount = 0;
+    return count;
+  }
+
+  void setPlan(final String plan) {
+
+    this.plan = plan;
+  }
+
+  /**
+   * Returns a copy, so callers read consistent totals.
+   */
+  SlowQuery copy() {
+
+    SlowQuery copy = new SlowQuery(fingerprint);
+    copy.method = method;
+    copy.count = count;
+    copy.totalNanos = totalNanos;
+    copy.maxNanos = maxNanos;
+    copy.maxRows = maxRows;
+    copy.plan = plan;
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+
+    return "SlowQuery [fingerprint=" + fingerprint + ", method=" + method + ", count=" + count
+      + ", totalMillis=" + getTotalMillis() + ", maxMillis=" + getMaxMillis() + "]";
+  }
+
+  private final String fingerprint;
+
+  private String method;
+
+  private long count;
+
+  private long totalNanos;
+
+  private long maxNanos;
+
+  private long maxRows;
+
+  private String plan;
+
+  private boolean logged;
+
+  private long lastLoggedTime;
+
+  private long unloggedCount;
+
+}
@@ -0,0 +1,274 @@
+package org.codelogger.dao.mysql;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the dao calls whose statements ran longer than a threshold, at most
+ * once per fingerprint and log interval, and keeps the totals of the slow
+ * fingerprints. The <code>EXPLAIN</code> of a logged select is captured on a
+ * background thread when an explainer is given.
+ */
+class SlowQueryLog {
+
+  /**
+   * Explains a statement on a spare connection, returns null if there is
+   * none.
+   */
+  interface Explainer {
+
+    String explain(String sql, Object[] parameters) throws SQLException;
+
+  }
+
+  SlowQueryLog(final long thresholdMillis, final long logIntervalMillis,
+    final boolean redactArguments, final Explainer explainer) {
+
+    thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logIntervalMillis);
+    this.redactArguments = redactArguments;
+    this.explainer = explainer;
+  }
+
+  /**
+   * Records the call just timed by the given timer if its statements ran
+   * longer than the threshold.
+   */
+  void record(final CallTimer callTimer, final String method, final Object[] args) {
+
+    long nanos = callTimer.getStatementNanos();
+    String sql = callTimer.getSql();
+    if (nanos < thresholdNanos || sql == null) {
+      return;
+    }
+    record(method, sql, callTimer.getParameters(), args, nanos, callTimer.getRows());
+  }
+
+  void record(final String method, final String sql, final Object[] parameters,
+    final Object[] args, final long nanos, final long rows) {
+
+    String fingerprint = SqlFingerprint.of(sql);
+    long now = System.nanoTime();
+    long unloggedCount;
+    SlowQuery slowQuery;
+    synchronized (this) {
+      slowQuery = slowQueries.get(fingerprint);
+      if (slowQuery == null) {
+        if (slowQueries.size() >= MAX_FINGERPRINTS) {
+          evictLeastSlowQuery();
+        }
+        slowQuery = new SlowQuery(fingerprint);
+        slowQueries.put(fingerprint, slowQuery);
+      }
+      slowQuery.record(method, nanos, rows);
+      unloggedCount = slowQuery.markLogged(now, logIntervalNanos);
+      if (unloggedCount < 0) {
+        return;
+      }
+    }
+    String message = format(method, fingerprint, args, nanos, rows, unloggedCount);
+    if (explainer == null || !isSelect(sql)) {
+      logger.warn(message);
+      return;
+    }
+    try {
+      explainExecutor.execute(new ExplainTask(slowQuery, sql, parameters, message));
+    } catch (RejectedExecutionException e) {
+      logger.warn(message);
+    }
+  }
+
+  /**
+   * Returns the slow fingerprints with the most total time first.
+   */
+  List<SlowQuery> getTopQueries(final int limit) {
+
+    List<SlowQuery> topQueries = newArrayList();
+    synchronized (this) {
+      for (SlowQuery slowQuery : slowQueries.values()) {
+        topQueries.add(slowQuery.copy());
+      }
+    }
+    Collections.sort(topQueries, new Comparator<SlowQuery>() {
+
+      @Override
+      public int compare(final SlowQuery left, final SlowQuery right) {
+
+        return Double.compare(right.getTotalMillis(), left.getTotalMillis());
+      }
+    });
+    return topQueries.size() > limit ? newArrayList(topQueries.subList(0, limit)) : topQueries;
+  }
+
+  /**
+   * Drops the fingerprint with the least total time, so a full log keeps
+   * tracking and logging new slow statements.
+   */
+  private void evictLeastSlowQuery() {
+
+    SlowQuery leastSlowQuery = null;
+    for (SlowQuery slowQuery : slowQueries.values()) {
+      if (leastSlowQuery == null || slowQuery.getTotalMillis() < leastSlowQuery.getTotalMillis()) {
+        leastSlowQuery = slowQuery;
+      }
+    }
+    slowQueries.remove(leastSlowQuery.getFingerprint());
+  }
+
+  private String format(final String method, final String fingerprint, final Object[] args,
+    final long nanos, final long rows, final long unloggedCount) {
+
+    StringBuilder message = new StringBuilder("Slow query ").append(
+      TimeUnit.NANOSECONDS.toMillis(nanos)).append("ms, ").append(rows).append(" rows by ")
+      .append(method).append(" with ");
+    if (args == null || args.length == 0) {
+      message.append("no arguments");
+    } else if (redactArguments) {
+      message.append("arguments redacted");
+    } else {
+      String arguments = Arrays.deepToString(args);
+      message.append(arguments.length() > MAX_ARGUMENTS_LENGTH ? arguments.substring(0,
+        MAX_ARGUMENTS_LENGTH) + "..." : arguments);
+    }
+    message.append(": ").append(fingerprint);
+    if (unloggedCount > 0) {
+      message.append(" (").append(unloggedCount).append(" more since last logged)");
+    }
+    return message.toString();
+  }
+
+  /**
+   * Formats the rows of an <code>EXPLAIN</code> one per line, rows that scan a
+   * whole table are marked.
+   */
+  static String formatPlan(final ResultSet resultSet) throws SQLException {
+
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    int typeColumn = 0;
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      if (TYPE_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+        typeColumn = i;
+      }
+    }
+    StringBuilder plan = new StringBuilder();
+    while (resultSet.next()) {
+      if (plan.length() > 0) {
+        plan.append('\n');
+      }
+      if (typeColumn > 0 && FULL_SCAN.equalsIgnoreCase(resultSet.getString(typeColumn))) {
+        plan.append("FULL SCAN ");
+      }
+      for (int i = 1; i <= metaData.getColumnCount(); i++) {
+        plan.append(i == 1 ? "" : ", ").append(metaData.getColumnLabel(i)).append('=').append(
+          resultSet.getString(i));
+      }
+    }
+    return plan.toString();
+  }
+
+  private static boolean isSelect(final String sql) {
+
+    return sql.trim().regionMatches(true, 0, "select", 0, "select".length());
+  }
+
+  private class ExplainTask implements Runnable {
+
+    ExplainTask(final SlowQuery slowQuery, final String sql, final Object[] parameters,
+      final String message) {
+
+      this.slowQuery = slowQuery;
+      this.sql = sql;
+      this.parameters = parameters;
+      this.message = message;
+    }
+
+    @Override
+    public void run() {
+
+      String plan = null;
+      if (parameters != null) {
+        try {
+          plan = explainer.explain(sql, parameters);
+        } catch (SQLException e) {
+          logger.debug("Explain {} failed.", sql, e);
+        } catch (RuntimeException e) {
+          logger.debug("Explain {} failed.", sql, e);
+        }
+      }
+      if (plan == null) {
+        logger.warn(message);
+        return;
+      }
+      synchronized (SlowQueryLog.this) {
+        slowQuery.setPlan(plan);
+      }
+      logger.warn("{}\n{}", message, plan);
+    }
+
+    private final SlowQuery slowQuery;
+
+    private final String sql;
+
+    private final Object[] parameters;
+
+    private final String message;
+
+  }
+
+  private final long thresholdNanos;
+
+  private final long logIntervalNanos;
+
+  private final boolean redactArguments;
+
+  private final Explainer explainer;
+
+  private final Map<String, SlowQuery> slowQueries = new LinkedHashMap<String, SlowQuery>();
+
+  static final int MAX_FINGERPRINTS = 1000;
+
+  private static final int MAX_ARGUMENTS_LENGTH = 1000;
+
+  private static final String TYPE_COLUMN = "type";
+
+  /**
+   * The join type of a full table scan.
+   */
+  private static final String FULL_SCAN = "ALL";
+
+  /**
+   * Runs the explains of all daos on one daemon thread, explains that do not
+   * fit its queue are skipped.
+   */
+  private static final ThreadPoolExecutor explainExecutor = new ThreadPoolExecutor(1, 1, 0,
+    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(16), new ThreadFactory() {
+
+      @Override
+      public Thread newThread(final Runnable runnable) {
+
+        Thread thread = new Thread(runnable, "dao-slow-query-explain");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+}
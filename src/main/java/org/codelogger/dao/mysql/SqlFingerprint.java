@@ -0,0 +1,132 @@
+package org.codelogger.dao.mysql;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes sql into a fingerprint shared by all executions of the same
+ * statement: literals become <code>?</code>, lists of placeholders collapse to
+ * <code>(?+)</code>, repeated row values of a multi-row insert to one row,
+ * whitespace collapses to one space and everything but quoted identifiers is
+ * lower cased.
+ */
+final class SqlFingerprint {
+
+  private SqlFingerprint() {
+
+  }
+
+  static String of(final String sql) {
+
+    StringBuilder fingerprint = new StringBuilder(sql.length());
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = skipQuoted(sql, i, c);
+        fingerprint.append('?');
+      } else if (c == '`') {
+        int end = skipQuoted(sql, i, c);
+        fingerprint.append(sql, i, end);
+        i = end;
+      } else if (Character.isWhitespace(c)) {
+        while (i < length && Character.isWhitespace(sql.charAt(i))) {
+          i++;
+        }
+        if (fingerprint.length() > 0 && i < length) {
+          fingerprint.append(' ');
+        }
+      } else if (Character.isDigit(c) && !isIdentifierPart(fingerprint)) {
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+          i++;
+        }
+        fingerprint.append('?');
+      } else {
+        fingerprint.append(Character.toLowerCase(c));
+        i++;
+      }
+    }
+    return REPEATED_ROWS.matcher(collapsePlaceholderLists(fingerprint.toString())).replaceAll(
+      "$1");
+  }
+
+  /**
+   * Returns the index after the quoted text starting at the given index, a
+   * doubled or escaped quote does not end it.
+   */
+  private static int skipQuoted(final String sql, final int start, final char quote) {
+
+    int i = start + 1;
+    while (i < sql.length()) {
+      char c = sql.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote && i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return sql.length();
+  }
+
+  private static boolean isIdentifierPart(final StringBuilder fingerprint) {
+
+    if (fingerprint.length() == 0) {
+      return false;
+    }
+    char previous = fingerprint.charAt(fingerprint.length() - 1);
+    return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+  }
+
+  private static String collapsePlaceholderLists(final String fingerprint) {
+
+    StringBuilder collapsed = new StringBuilder(fingerprint.length());
+    int i = 0;
+    while (i < fingerprint.length()) {
+      int end = endOfPlaceholderList(fingerprint, i);
+      if (end > 0) {
+        collapsed.append("(?+)");
+        i = end;
+      } else {
+        collapsed.append(fingerprint.charAt(i++));
+      }
+    }
+    return collapsed.toString();
+  }
+
+  /**
+   * Returns the index after a list of two or more placeholders like
+   * <code>(?, ?)</code> starting at the given index, -1 if there is none.
+   */
+  private static int endOfPlaceholderList(final String fingerprint, final int start) {
+
+    if (fingerprint.charAt(start) != '(') {
+      return -1;
+    }
+    int placeholders = 0;
+    boolean expectPlaceholder = true;
+    for (int i = start + 1; i < fingerprint.length(); i++) {
+      char c = fingerprint.charAt(i);
+      if (c == ' ') {
+        continue;
+      }
+      if (expectPlaceholder && c == '?') {
+        placeholders++;
+        expectPlaceholder = false;
+      } else if (!expectPlaceholder && c == ',') {
+        expectPlaceholder = true;
+      } else if (!expectPlaceholder && c == ')') {
+        return placeholders > 1 ? i + 1 : -1;
+      } else {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static final Pattern REPEATED_ROWS = Pattern.compile("(\\([^()]*\\))(?:\\s*,\\s*\\1)+");
+
+}
@@ -0,0 +1,107 @@
+package org.codelogger.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LRU cache of the prepared statements of one pooled connection, keyed by sql
+ * and whether generated keys are returned.
+ * A statement is taken out of the cache while it is in use and put back as the
+ * most recently used one when it is closed, the least recently used statement
+ * is closed when the cache is full.
+ */
+class StatementCache {
+
+  StatementCache(final int maxSize, final CacheStatistics statistics) {
+
+    this.maxSize = maxSize;
+    this.statistics = statistics;
+  }
+
+  synchronized PreparedStatement prepareStatement(final PooledConnection connection,
+    final String sql, final int autoGeneratedKeys) throws SQLException {
+
+    String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? GENERATED_KEYS_PREFIX
+      + sql : sql;
+    CachedPreparedStatement statement = statements.remove(key);
+    if (statement != null && !statement.getPhysicalStatement().isClosed()) {
+      statistics.recordHit();
+      statement.reuse();
+      return statement;
+    }
+    statistics.recordMiss();
+    return new CachedPreparedStatement(key, sql, connection.getPhysicalConnection()
+      .prepareStatement(sql, autoGeneratedKeys), this, connection);
+  }
+
+  /**
+   * Puts a statement closed by its borrower back in the cache once its state is
+   * reset, a statement that can not be reset is closed instead.
+   */
+  synchronized void release(final CachedPreparedStatement statement) {
+
+    if (!statement.isReusable()) {
+      closeQuietly(statement);
+      return;
+    }
+    try {
+      statement.resetState();
+    } catch (SQLException e) {
+      logger.debug("Reset statement[{}] failed.", statement.getSql(), e);
+      closeQuietly(statement);
+      return;
+    }
+    CachedPreparedStatement previous = statements.put(statement.getKey(), statement);
+    if (previous != null && previous != statement) {
+      closeQuietly(previous);
+    }
+  }
+
+  synchronized void closeAll() {
+
+    for (CachedPreparedStatement statement : statements.values()) {
+      closeQuietly(statement);
+    }
+    statements.clear();
+  }
+
+  private void closeQuietly(final CachedPreparedStatement statement) {
+
+    try {
+      statement.getPhysicalStatement().close();
+    } catch (SQLException e) {
+      logger.debug("Close statement[{}] failed.", statement.getSql(), e);
+    }
+  }
+
+  private final Map<String, CachedPreparedStatement> statements = new LinkedHashMap<String, CachedPreparedStatement>() {
+
+    private static final long serialVersionUID = -4424427880416429453L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, CachedPreparedStatement> eldest) {
+
+      if (size() > maxSize) {
+        statistics.recordEviction();
+        closeQuietly(eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private final int maxSize;
+
+  private final CacheStatistics statistics;
+
+  private static final String GENERATED_KEYS_PREFIX = "/* generated keys */ ";
+
+  private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+}
@@ -0,0 +1,10 @@
+package org.codelogger.dao.mysql;
+
+/**
+ * Work to run in a transaction by {@link Transactions#execute(TransactionCallback)}.
+ */
+public interface TransactionCallback<T> {
+
+  T doInTransaction();
+
+}
@@ -0,0 +1,191 @@
+package org.codelogger.dao.mysql;
+
+import static com.google.common.collect.Maps.newLinkedHashMap;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.codelogger.dao.exception.MysqlSqlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binds one connection per database to the current thread, so all dao calls
+ * between {@link #begin()} and {@link #commit()} or {@link #rollback()} share
+ * it and are committed once. Reads in a transaction go to the primary. Calls
+ * made asynchronously run on other threads and are not part of the
+ * transaction.
+ *
+ * <pre>
+ * Transactions.execute(new TransactionCallback&lt;Void&gt;() {
+ *
+ *   public Void doInTransaction() {
+ *     orderDao.save(order);
+ *     stockDao.save(stock);
+ *     return null;
+ *   }
+ * });
+ * </pre>
+ */
+public final class Transactions {
+
+  private Transactions() {
+
+  }
+
+  /**
+   * Runs the callback in a transaction, committed if it returns and rolled
+   * back if it throws. Joins the transaction of the current thread if there is
+   * one. A failed rollback is added as suppressed to what the callback threw.
+   */
+  public static <T> T execute(final TransactionCallback<T> callback) {
+
+    if (isActive()) {
+      return callback.doInTransaction();
+    }
+    begin();
+    T result;
+    try {
+      result = callback.doInTransaction();
+    } catch (Throwable e) {
+      try {
+        rollback();
+      } catch (RuntimeException rollbackFailure) {
+        e.addSuppressed(rollbackFailure);
+      }
+      throw e;
+    }
+    commit();
+    return result;
+  }
+
+  /**
+   * Starts a transaction on the current thread. Connections are borrowed when
+   * the first statement runs.
+   */
+  public static void begin() {
+
+    if (isActive()) {
+      throw new IllegalStateException("A transaction is already active on this thread.");
+    }
+    transactions.set(new Transaction());
+  }
+
+  public static void commit() {
+
+    complete(true);
+  }
+
+  public static void rollback() {
+
+    complete(false);
+  }
+
+  public static boolean isActive() {
+
+    return transactions.get() != null;
+  }
+
+  /**
+   * Returns the connection of the current transaction to the database of the
+   * given pool, borrowed from the pool with autocommit off on first use. Returns
+   * null if there is no transaction.
+   */
+  static Connection getConnection(final DataSourcePool dataSourcePool) {
+
+    Transaction transaction = transactions.get();
+    if (transaction == null) {
+      return null;
+    }
+    String dataSourceKey = dataSourcePool.getDataSourceKey();
+    Connection connection = transaction.connections.get(dataSourceKey);
+    if (connection == null) {
+      connection = dataSourcePool.getConnection();
+      try {
+        connection.setAutoCommit(false);
+      } catch (SQLException e) {
+        dataSourcePool.freeConnection(connection);
+        throw new MysqlSqlException(e);
+      }
+      transaction.connections.put(dataSourceKey, connection);
+      transaction.dataSourcePools.put(dataSourceKey, dataSourcePool);
+    }
+    return connection;
+  }
+
+  /**
+   * Returns whether the connection is bound to the transaction of the current
+   * thread, such a connection is released by the transaction.
+   */
+  static boolean isBound(final Connection connection) {
+
+    Transaction transaction = transactions.get();
+    return transaction != null && transaction.connections.containsValue(connection);
+  }
+
+  /**
+   * Runs the action once after the transaction of the current thread commits
+   * or rolls back, actions registered with the same key run once.
+   */
+  static void afterCompletion(final Object key, final Runnable action) {
+
+    Transaction transaction = transactions.get();
+    if (transaction == null) {
+      action.run();
+    } else if (!transaction.completionActions.containsKey(key)) {
+      transaction.completionActions.put(key, action);
+    }
+  }
+
+  private static void complete(final boolean commit) {
+
+    Transaction transaction = transactions.get();
+    if (transaction == null) {
+      throw new IllegalStateException("No transaction is active on this thread.");
+    }
+    transactions.remove();
+    SQLException failure = null;
+    for (Map.Entry<String, Connection> keyAndConnection : transaction.connections.entrySet()) {
+      Connection connection = keyAndConnection.getValue();
+      try {
+        if (commit && failure == null) {
+          connection.commit();
+        } else {
+          connection.rollback();
+        }
+      } catch (SQLException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+      try {
+        connection.setAutoCommit(true);
+      } catch (SQLException e) {
+        logger.warn("Reset autocommit of connection[{}] failed.", connection, e);
+      }
+      transaction.dataSourcePools.get(keyAndConnection.getKey()).freeConnection(connection);
+    }
+    for (Runnable action : transaction.completionActions.values()) {
+      action.run();
+    }
+    if (failure != null) {
+      throw new MysqlSqlException(commit ? "Commit failed." : "Rollback failed.", failure);
+    }
+  }
+
+  private static class Transaction {
+
+    private final Map<String, Connection> connections = newLinkedHashMap();
+
+    private final Map<String, DataSourcePool> dataSourcePools = newLinkedHashMap();
+
+    private final Map<Object, Runnable> completionActions = newLinkedHashMap();
+
+  }
+
+  private static final ThreadLocal<Transaction> transactions = new ThreadLocal<Transaction>();
+
+  private static final Logger logger = LoggerFactory.getLogger(Transactions.class);
+
+}
@@ -0,0 +1,24 @@
+package org.codelogger.dao.stereotype;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the results of a select method, findBy or {@link Query}, per
+ * statement and parameters. The results of a dao are dropped whenever it
+ * writes its table. Only single entity, list and page results can be cached.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface CacheResult {
+
+  /**
+   * (Optional) How long a result is cached, in milliseconds.
+   */
+  long ttl() default 60000;
+
+}
@@ -0,0 +1,44 @@
+package org.codelogger.dao.stereotype;
+
+/**
+ * Strategies to get the total count of a page query, see {@link PageCount}.
+ */
+public enum CountStrategy {
+
+  /**
+   * Runs the count query, then the content query.
+   */
+  SEQUENTIAL,
+
+  /**
+   * Runs the count query and the content query at the same time on two
+   * connections.
+   */
+  CONCURRENT,
+
+  /**
+   * Gets the total with <code>count(*) over ()</code> in the content query, in
+   * one round trip. Needs mysql 8.0 or later.
+   */
+  WINDOW,
+
+  /**
+   * Caches the total per query and parameters for {@link PageCount#ttl()}
+   * milliseconds.
+   */
+  CACHED,
+
+  /**
+   * Uses the approximate row count of the table from
+   * <code>information_schema.tables</code>, only for unfiltered
+   * <code>findAll(Pageable)</code>.
+   */
+  APPROXIMATE,
+
+  /**
+   * Skips the total and only tells whether a next page exists. The count of the
+   * page is then the number of rows up to the end of this page, plus one if a
+   * next page exists.
+   */
+  NONE
+}
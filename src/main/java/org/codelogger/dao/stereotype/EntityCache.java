@@ -0,0 +1,30 @@
+package org.codelogger.dao.stereotype;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the entities found by id. Entities saved or deleted through the dao
+ * are evicted, and the whole cache is cleared by any <code>@Query</code>
+ * update or delete.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface EntityCache {
+
+  /**
+   * (Optional) The maximum number of cached entities, the least recently used
+   * are evicted first.
+   */
+  int maxSize() default 10000;
+
+  /**
+   * (Optional) How long an entity is cached, in milliseconds.
+   */
+  long ttl() default 600000;
+
+}
@@ -0,0 +1,19 @@
+package org.codelogger.dao.stereotype;
+
+/**
+ * Strategies to generate the id of a new entity.
+ */
+public enum GenerationType {
+
+  /**
+   * The id column is an AUTO_INCREMENT column, the id generated by the database
+   * is read back after the insert.
+   */
+  IDENTITY,
+
+  /**
+   * Ids are handed out locally from blocks reserved in a sequence table, see
+   * {@link Id#sequenceTable()}.
+   */
+  HILO
+}
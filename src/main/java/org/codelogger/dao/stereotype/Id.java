@@ -10,4 +10,23 @@ import java.lang.annotation.Target;
 public @interface Id {
 
   String name() default "";
+
+  /**
+   * (Optional) The strategy to generate the id of a new entity. Defaults to
+   * {@link GenerationType#IDENTITY}.
+   */
+  GenerationType strategy() default GenerationType.IDENTITY;
+
+  /**
+   * (Optional) The sequence table used by {@link GenerationType#HILO}. It has a
+   * <code>name varchar</code> primary key column, which holds the table name of
+   * the entity, and a <code>next_val bigint</code> column.
+   */
+  String sequenceTable() default "id_sequence";
+
+  /**
+   * (Optional) The number of ids reserved from the sequence table at a time by
+   * {@link GenerationType#HILO}.
+   */
+  int allocationSize() default 100;
 }
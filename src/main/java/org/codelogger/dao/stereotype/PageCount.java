@@ -0,0 +1,27 @@
+package org.codelogger.dao.stereotype;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Configures how the total of a <code>Page</code> method is counted. On a dao
+ * interface it applies to all its page methods, including
+ * <code>findAll(Pageable)</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Documented
+public @interface PageCount {
+
+  CountStrategy value() default CountStrategy.SEQUENTIAL;
+
+  /**
+   * (Optional) How long a total is cached by {@link CountStrategy#CACHED}, in
+   * milliseconds.
+   */
+  long ttl() default 60000;
+
+}
@@ -0,0 +1,40 @@
+package org.codelogger.dao.bean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeysetPageableTest {
+
+  @Test
+  public void continuationTokenOfFirstPage() {
+
+    KeysetPageable pageable = new KeysetPageable(20, false, "createTime");
+    KeysetPageable decoded = KeysetPageable.fromContinuationToken(pageable.toContinuationToken());
+    assertEquals(Integer.valueOf(20), decoded.pageSize);
+    assertArrayEquals(new String[] { "createTime" }, decoded.fields);
+    assertNull(decoded.lastValues);
+  }
+
+  @Test
+  public void continuationTokenKeepsValueTypes() {
+
+    KeysetPageable pageable = new KeysetPageable(50, true, "name", "age").next(new Object[] {
+        "a|b,c", 7, 42L, null });
+    String token = pageable.toContinuationToken();
+    assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    KeysetPageable decoded = KeysetPageable.fromContinuationToken(token);
+    assertTrue(decoded.descending);
+    assertArrayEquals(new String[] { "name", "age" }, decoded.fields);
+    assertArrayEquals(new Object[] { "a|b,c", 7, 42L, null }, decoded.lastValues);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidContinuationToken() {
+
+    KeysetPageable.fromContinuationToken("not a token");
+  }
+}
@@ -0,0 +1,40 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptivePoolSizerTest {
+
+  @Test
+  public void growsToLittlesLawWhenBorrowersWait() {
+
+    AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 50);
+    for (int i = 0; i < 1000; i++) {
+      poolSizer.recordBorrow(TimeUnit.MILLISECONDS.toNanos(20), 4);
+      poolSizer.recordReturn(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    // 1000 borrows/s held 100ms need 100 connections, capped at 50.
+    assertEquals(50, poolSizer.nextSize(4, 3, TimeUnit.SECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void growsByOneAtLeast() {
+
+    AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 50);
+    assertEquals(5, poolSizer.nextSize(4, 1, TimeUnit.SECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void shrinksWhenMostlyIdle() {
+
+    AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 50);
+    poolSizer.recordBorrow(0, 1);
+    poolSizer.recordReturn(TimeUnit.MILLISECONDS.toNanos(1));
+    assertEquals(15, poolSizer.nextSize(20, 0, TimeUnit.SECONDS.toNanos(1)));
+    assertEquals(2, poolSizer.nextSize(2, 0, TimeUnit.SECONDS.toNanos(1)));
+  }
+
+}
@@ -0,0 +1,239 @@
+package org.codelogger.dao.mysql;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class DataSourcePoolTest {
+
+  @Test
+  public void concurrentBorrowersNeverShareAConnection() throws Exception {
+
+    final DataSourcePool pool = new DataSourcePool(settings(), new FakeDriver());
+    final Set<Connection> borrowed = Collections.newSetFromMap(
+      new ConcurrentHashMap<Connection, Boolean>());
+    final AtomicInteger sharedBorrows = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<Void>> futures = newArrayList();
+      for (int i = 0; i < 16; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+
+          @Override
+          public Void call() throws Exception {
+
+            start.await();
+            for (int j = 0; j < 2000; j++) {
+              Connection connection = pool.getConnection();
+              if (!borrowed.add(connection)) {
+                sharedBorrows.incrementAndGet();
+              }
+              borrowed.remove(connection);
+              pool.freeConnection(connection);
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        assertNull(future.get());
+      }
+      assertEquals(0, sharedBorrows.get());
+      assertEquals(0, pool.getActiveConnections());
+      assertTrue(pool.getOpenConnections() <= 4);
+    } finally {
+      executor.shutdownNow();
+      DataSourcePool.closeAllConnections();
+    }
+  }
+
+  @Test
+  public void borrowersBeyondThePoolSizeWaitTheirTurn() throws Exception {
+
+    final DataSourcePool pool = new DataSourcePool(settings(), new FakeDriver());
+    final AtomicInteger inUse = new AtomicInteger();
+    final AtomicInteger peakInUse = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(32);
+    try {
+      List<Future<Void>> futures = newArrayList();
+      for (int i = 0; i < 32; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+
+          @Override
+          public Void call() throws Exception {
+
+            start.await();
+            for (int j = 0; j < 50; j++) {
+              Connection connection = pool.getConnection();
+              int current = inUse.incrementAndGet();
+              int peak;
+              do {
+                peak = peakInUse.get();
+              } while (current > peak && !peakInUse.compareAndSet(peak, current));
+              Thread.sleep(1);
+              inUse.decrementAndGet();
+              pool.freeConnection(connection);
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        assertNull(future.get(60, TimeUnit.SECONDS));
+      }
+      assertTrue(peakInUse.get() <= 4);
+      assertEquals(32 * 50, pool.getBorrowCount());
+      assertEquals(0, pool.getActiveConnections());
+      assertEquals(0, pool.getWaitingBorrowers());
+      assertTrue(pool.getOpenConnections() <= 4);
+    } finally {
+      executor.shutdownNow();
+      DataSourcePool.closeAllConnections();
+    }
+  }
+
+  @Test
+  public void tryGetConnectionDoesNotWaitOnAFullPool() {
+
+    DataSourcePool pool = new DataSourcePool(settings(), new FakeDriver());
+    try {
+      List<Connection> connections = newArrayList();
+      for (int i = 0; i < 4; i++) {
+        connections.add(pool.tryGetConnection());
+      }
+      assertEquals(4, pool.getActiveConnections());
+      assertNull(pool.tryGetConnection());
+      pool.freeConnection(connections.remove(0));
+      Connection connection = pool.tryGetConnection();
+      assertTrue(connection != null);
+      connections.add(connection);
+      for (Connection borrowed : connections) {
+        pool.freeConnection(borrowed);
+      }
+      assertEquals(0, pool.getActiveConnections());
+      assertEquals(4, pool.getOpenConnections());
+    } finally {
+      DataSourcePool.closeAllConnections();
+    }
+  }
+
+  @Test
+  public void closeAllClosesBorrowedConnectionsOnReturn() {
+
+    DataSourcePool pool = new DataSourcePool(settings(), new FakeDriver());
+    Connection borrowed = pool.getConnection();
+    Connection idle = pool.getConnection();
+    pool.freeConnection(idle);
+    assertEquals(2, pool.getOpenConnections());
+    DataSourcePool.closeAllConnections();
+    assertEquals(1, pool.getOpenConnections());
+    pool.freeConnection(borrowed);
+    assertEquals(0, pool.getOpenConnections());
+    assertEquals(0, pool.getActiveConnections());
+  }
+
+  private Properties settings() {
+
+    Properties settings = new Properties();
+    settings.setProperty("database.host", "localhost");
+    settings.setProperty("database.name", "test");
+    settings.setProperty("database.user", "test");
+    settings.setProperty("database.password", "test");
+    settings.setProperty("database.max.connection.in.pool", "4");
+    settings.setProperty("database.min.connection.in.pool", "0");
+    return settings;
+  }
+
+  /**
+   * Opens connections that do nothing, so the pool runs without a database.
+   */
+  private static class FakeDriver implements Driver {
+
+    @Override
+    public Connection connect(final String url, final Properties info) throws SQLException {
+
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, new InvocationHandler() {
+
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+
+            if (method.getName().equals("isValid")) {
+              return true;
+            } else if (method.getReturnType() == boolean.class) {
+              return false;
+            } else if (method.getReturnType() == int.class) {
+              return 0;
+            }
+            return null;
+          }
+        });
+    }
+
+    @Override
+    public boolean acceptsURL(final String url) {
+
+      return true;
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) {
+
+      return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+
+      return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+
+      return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+
+      return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+
+      return null;
+    }
+
+  }
+
+}
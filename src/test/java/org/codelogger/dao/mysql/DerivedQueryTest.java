@@ -0,0 +1,142 @@
+package org.codelogger.dao.mysql;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.codelogger.dao.mysql.DerivedQuery.LikeMode;
+import org.codelogger.dao.mysql.DerivedQuery.Subject;
+import org.codelogger.dao.mysql.QueryPlan.QueryType;
+import org.codelogger.dao.mysql.QueryPlan.ResultType;
+import org.junit.Test;
+
+public class DerivedQueryTest {
+
+  @Test
+  public void isDerived() {
+
+    assertTrue(DerivedQuery.isDerived("findByName"));
+    assertTrue(DerivedQuery.isDerived("findTop3ByAgeGreaterThan"));
+    assertTrue(DerivedQuery.isDerived("findAllByOrderByNameAsc"));
+    assertTrue(DerivedQuery.isDerived("countByName"));
+    assertFalse(DerivedQuery.isDerived("findAll"));
+    assertFalse(DerivedQuery.isDerived("count"));
+  }
+
+  @Test
+  public void subjects() {
+
+    assertEquals(Subject.FIND, new DerivedQuery("findByName", propertyToColumn()).getSubject());
+    DerivedQuery derivedQuery = new DerivedQuery("existsByEmail", propertyToColumn());
+    assertEquals(Subject.EXISTS, derivedQuery.getSubject());
+    assertEquals(" where email_address = ?", derivedQuery.getWhereSql());
+    derivedQuery = new DerivedQuery("countByAgeBetween", propertyToColumn());
+    assertEquals(Subject.COUNT, derivedQuery.getSubject());
+    assertEquals(2, derivedQuery.getArgumentCount());
+    assertEquals(Subject.DELETE, new DerivedQuery("deleteByNameIsNull", propertyToColumn())
+      .getSubject());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void deleteWithoutPredicate() {
+
+    new DerivedQuery("deleteAllBy", propertyToColumn());
+  }
+
+  @Test
+  public void equalityPredicates() {
+
+    DerivedQuery derivedQuery = new DerivedQuery("findByNameAndEmail", propertyToColumn());
+    assertEquals(" where name = ? and email_address = ?", derivedQuery.getWhereSql());
+    assertArrayEquals(new int[] { 0, 1 }, derivedQuery.getArgumentIndexes());
+    assertNull(derivedQuery.getLikeModes());
+    assertEquals("", derivedQuery.getOrderBySql());
+    assertEquals("", derivedQuery.getLimitSql());
+  }
+
+  @Test
+  public void operatorsAndOr() {
+
+    DerivedQuery derivedQuery = new DerivedQuery(
+      "findByAgeBetweenAndNameIsNullOrIdInOrAgeGreaterThanEqual", propertyToColumn());
+    assertEquals(" where age between ? and ? and name is null or id in (?) or age >= ?",
+      derivedQuery.getWhereSql());
+    assertEquals(4, derivedQuery.getArgumentCount());
+  }
+
+  @Test
+  public void emptyInMatchesNoRowAndEmptyNotInEveryRow() {
+
+    DerivedQuery derivedQuery = new DerivedQuery("findByIdInOrAgeNotIn", propertyToColumn());
+    QueryPlan queryPlan = new QueryPlan(QueryType.SELECT, ResultType.LIST, "select * from user"
+      + derivedQuery.getWhereSql(), null, derivedQuery.getArgumentIndexes(), new Class<?>[] {
+        List.class, List.class }, -1, null, derivedQuery.getLikeModes());
+    Object[] args = { Collections.emptyList(), Collections.emptyList() };
+    assertEquals("select * from user where id in (select null from dual where false)"
+      + " or age not in (select null from dual where false)", queryPlan.getSql(args));
+    assertEquals(0, queryPlan.getParameters(args).length);
+    args = new Object[] { Arrays.asList(1, 2), Collections.emptyList() };
+    assertEquals("select * from user where id in (?,?)"
+      + " or age not in (select null from dual where false)", queryPlan.getSql(args));
+  }
+
+  @Test
+  public void propertyEndingLikeAnOperator() {
+
+    DerivedQuery derivedQuery = new DerivedQuery("findByCheckedInOrOrderNo", propertyToColumn());
+    assertEquals(" where checked_in = ? or order_no = ?", derivedQuery.getWhereSql());
+  }
+
+  @Test
+  public void likePatterns() {
+
+    DerivedQuery derivedQuery = new DerivedQuery("findByNameStartingWithAndEmailLike",
+      propertyToColumn());
+    assertEquals(" where name like ? and email_address like ?", derivedQuery.getWhereSql());
+    assertArrayEquals(new LikeMode[] { LikeMode.STARTING_WITH, null }, derivedQuery
+      .getLikeModes());
+    assertEquals("50\\%\\_off%", LikeMode.STARTING_WITH.toPattern("50%_off"));
+    assertEquals("%a\\\\b%", LikeMode.CONTAINING.toPattern("a\\b"));
+  }
+
+  @Test
+  public void orderByAndLimit() {
+
+    DerivedQuery derivedQuery = new DerivedQuery("findFirst10ByAgeLessThanOrderByAgeDescName",
+      propertyToColumn());
+    assertEquals(" where age < ?", derivedQuery.getWhereSql());
+    assertEquals(" order by age desc,name asc", derivedQuery.getOrderBySql());
+    assertEquals(" limit 10", derivedQuery.getLimitSql());
+    derivedQuery = new DerivedQuery("findTopByOrderByAgeAsc", propertyToColumn());
+    assertEquals("", derivedQuery.getWhereSql());
+    assertEquals(" order by age asc", derivedQuery.getOrderBySql());
+    assertEquals(1, derivedQuery.getLimit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownProperty() {
+
+    new DerivedQuery("findByNickname", propertyToColumn());
+  }
+
+  private Map<String, String> propertyToColumn() {
+
+    Map<String, String> propertyToColumn = newHashMap();
+    propertyToColumn.put("Id", "id");
+    propertyToColumn.put("Name", "name");
+    propertyToColumn.put("Email", "email_address");
+    propertyToColumn.put("Age", "age");
+    propertyToColumn.put("CheckedIn", "checked_in");
+    propertyToColumn.put("OrderNo", "order_no");
+    return propertyToColumn;
+  }
+
+}
@@ -0,0 +1,35 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class IdCacheTest {
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+
+    IdCache<String> idCache = new IdCache<String>(2, 60000);
+    idCache.put(1L, "a", idCache.getGeneration());
+    idCache.put(2L, "b", idCache.getGeneration());
+    idCache.get(1L);
+    idCache.put(3L, "c", idCache.getGeneration());
+    assertEquals("a", idCache.get(1L));
+    assertNull(idCache.get(2L));
+    assertEquals(1, idCache.getStatistics().getEvictionCount());
+    assertEquals(1, idCache.getStatistics().getMissCount());
+  }
+
+  @Test
+  public void skipsValuesReadBeforeWrite() {
+
+    IdCache<String> idCache = new IdCache<String>(10, 60000);
+    long generation = idCache.getGeneration();
+    idCache.remove(1L);
+    idCache.put(1L, "stale", generation);
+    assertNull(idCache.get(1L));
+    assertEquals(0, idCache.size());
+  }
+
+}
@@ -0,0 +1,47 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverValuesWithoutGaps() {
+
+    for (long value = 0; value < 100000; value++) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+      assertTrue(bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1));
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram
+      .bucketOf(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void percentilesAreWithinBucketPrecision() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(50.5, histogram.getMeanMillis(), 0.01);
+    assertEquals(50, histogram.getPercentileMillis(50), 50 * 0.125);
+    assertEquals(99, histogram.getPercentileMillis(99), 99 * 0.125);
+    assertEquals(100, histogram.getPercentileMillis(100), 0.01);
+    assertEquals(100, histogram.getMaxMillis(), 0.01);
+  }
+
+  @Test
+  public void emptyHistogramReportsZero() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileMillis(99), 0);
+    assertEquals(0, histogram.getMeanMillis(), 0);
+  }
+
+}
@@ -0,0 +1,61 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SlowQueryLogTest {
+
+  @Test
+  public void aggregatesByFingerprint() {
+
+    SlowQueryLog slowQueryLog = new SlowQueryLog(100, 60000, true, null);
+    slowQueryLog.record("UserDao.findByName(String)", "select * from user where name = ?",
+      new Object[] { "a" }, new Object[] { "a" }, TimeUnit.MILLISECONDS.toNanos(150), 3);
+    slowQueryLog.record("UserDao.findByIds(List)", "select * from user where id in (?, ?)",
+      new Object[] { 1, 2 }, new Object[] { 1, 2 }, TimeUnit.MILLISECONDS.toNanos(200), 2);
+    slowQueryLog.record("UserDao.findByIds(List)", "select * from user where id in (?, ?, ?)",
+      new Object[] { 1, 2, 3 }, new Object[] { 1, 2, 3 }, TimeUnit.MILLISECONDS.toNanos(300), 3);
+    List<SlowQuery> topQueries = slowQueryLog.getTopQueries(10);
+    assertEquals(2, topQueries.size());
+    assertEquals("select * from user where id in (?+)", topQueries.get(0).getFingerprint());
+    assertEquals(2, topQueries.get(0).getCount());
+    assertEquals(500, topQueries.get(0).getTotalMillis(), 0.01);
+    assertEquals(300, topQueries.get(0).getMaxMillis(), 0.01);
+    assertEquals(1, slowQueryLog.getTopQueries(1).size());
+  }
+
+  @Test
+  public void fullLogEvictsLeastSlowFingerprint() {
+
+    SlowQueryLog slowQueryLog = new SlowQueryLog(100, 60000, true, null);
+    for (int i = 0; i < SlowQueryLog.MAX_FINGERPRINTS; i++) {
+      slowQueryLog.record("UserDao.find()", "select * from t" + i, new Object[0], null,
+        TimeUnit.MILLISECONDS.toNanos(i == 0 ? 100 : 200), 1);
+    }
+    slowQueryLog.record("UserDao.findAll()", "select * from user", new Object[0], null,
+      TimeUnit.MILLISECONDS.toNanos(1000), 1);
+    List<SlowQuery> topQueries = slowQueryLog.getTopQueries(SlowQueryLog.MAX_FINGERPRINTS + 1);
+    assertEquals(SlowQueryLog.MAX_FINGERPRINTS, topQueries.size());
+    assertEquals("select * from user", topQueries.get(0).getFingerprint());
+    for (SlowQuery slowQuery : topQueries) {
+      assertFalse("select * from t0".equals(slowQuery.getFingerprint()));
+    }
+  }
+
+  @Test
+  public void logsOncePerInterval() {
+
+    SlowQuery slowQuery = new SlowQuery("select ?");
+    long interval = TimeUnit.SECONDS.toNanos(60);
+    assertEquals(0, slowQuery.markLogged(0, interval));
+    assertEquals(-1, slowQuery.markLogged(TimeUnit.SECONDS.toNanos(1), interval));
+    assertEquals(-1, slowQuery.markLogged(TimeUnit.SECONDS.toNanos(2), interval));
+    assertEquals(2, slowQuery.markLogged(TimeUnit.SECONDS.toNanos(61), interval));
+  }
+
+}
@@ -0,0 +1,32 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SqlFingerprintTest {
+
+  @Test
+  public void replacesLiteralsAndCollapsesWhitespace() {
+
+    assertEquals("select * from user where name = ? and age > ? and id = ?",
+      SqlFingerprint.of("SELECT *  FROM user\n WHERE name = 'o''k' AND age > 42 and id = ?"));
+  }
+
+  @Test
+  public void collapsesPlaceholderLists() {
+
+    assertEquals("select * from user where id in (?+) limit ?, ?",
+      SqlFingerprint.of("select * from user where id in (?, ?,?) limit ?, ?"));
+    assertEquals(SqlFingerprint.of("insert into user (name) values (?),(?)"),
+      SqlFingerprint.of("insert into user (name) values (?)"));
+  }
+
+  @Test
+  public void keepsIdentifiers() {
+
+    assertEquals("select `User`.name2 from t1 where c_3 = ?",
+      SqlFingerprint.of("select `User`.name2 from t1 where c_3 = 7"));
+  }
+
+}
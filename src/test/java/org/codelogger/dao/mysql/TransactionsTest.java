@@ -0,0 +1,101 @@
+package org.codelogger.dao.mysql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TransactionsTest {
+
+  @Test
+  public void nestedExecuteJoinsTransaction() {
+
+    final AtomicInteger completions = new AtomicInteger();
+    String result = Transactions.execute(new TransactionCallback<String>() {
+
+      @Override
+      public String doInTransaction() {
+
+        Transactions.afterCompletion("key", new Runnable() {
+
+          @Override
+          public void run() {
+
+            completions.incrementAndGet();
+          }
+        });
+        return Transactions.execute(new TransactionCallback<String>() {
+
+          @Override
+          public String doInTransaction() {
+
+            assertTrue(Transactions.isActive());
+            return "done";
+          }
+        });
+      }
+    });
+    assertEquals("done", result);
+    assertEquals(1, completions.get());
+    assertFalse(Transactions.isActive());
+  }
+
+  @Test
+  public void exceptionCompletesTransaction() {
+
+    try {
+      Transactions.execute(new TransactionCallback<Void>() {
+
+        @Override
+        public Void doInTransaction() {
+
+          throw new IllegalStateException("failed");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertFalse(Transactions.isActive());
+  }
+
+  @Test
+  public void rollbackFailureIsSuppressed() {
+
+    try {
+      Transactions.execute(new TransactionCallback<Void>() {
+
+        @Override
+        public Void doInTransaction() {
+
+          Transactions.afterCompletion("key", new Runnable() {
+
+            @Override
+            public void run() {
+
+              throw new IllegalArgumentException("rollback failed");
+            }
+          });
+          throw new IllegalStateException("failed");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+      assertEquals(1, e.getSuppressed().length);
+      assertEquals("rollback failed", e.getSuppressed()[0].getMessage());
+    }
+    assertFalse(Transactions.isActive());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void commitWithoutTransaction() {
+
+    Transactions.commit();
+  }
+
+}